@@ -46,6 +46,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutionException;
 
+import me.pqpo.smartcropperlib.EncodeOptions;
+import me.pqpo.smartcropperlib.NativeImage;
 import me.pqpo.smartcropperlib.SmartCropper;
 import pub.devrel.easypermissions.EasyPermissions;
 
@@ -118,6 +120,9 @@ public class CameraActivity extends AppCompatActivity implements EasyPermissions
     // SSIM相似度检测相关
     private Bitmap mLastCapturedBitmap = null;
     private static final double SSIM_THRESHOLD = 0.50; // 50% 相似度阈值
+
+    // 自动处理时边缘检测使用的图像最大边长
+    private static final int SCAN_MAX_DIM = 1024;
     
     // 拍照统计
     private int mCapturedCount = 0;
@@ -636,7 +641,19 @@ public class CameraActivity extends AppCompatActivity implements EasyPermissions
     private void performAutoProcessing(File originalFile) {
         mBackgroundHandler.post(() -> {
             try {
-                // 加载原始图片
+                // 在按扫描所需尺寸解码的图像上进行边缘检测，不再为扫描解码原尺寸 ARGB 图片
+                android.graphics.Point[] detectedPoints = null;
+                int scanWidth = 0;
+                int scanHeight = 0;
+                try (NativeImage scanImage = SmartCropper.decode(originalFile.getPath(), SCAN_MAX_DIM)) {
+                    if (scanImage != null) {
+                        detectedPoints = SmartCropper.scan(scanImage);
+                        scanWidth = scanImage.getWidth();
+                        scanHeight = scanImage.getHeight();
+                    }
+                }
+
+                // 加载原始图片用于裁剪
                 android.graphics.Bitmap originalBitmap = android.graphics.BitmapFactory.decodeFile(originalFile.getPath());
                 if (originalBitmap == null) {
                     runOnUiThread(() -> {
@@ -647,9 +664,13 @@ public class CameraActivity extends AppCompatActivity implements EasyPermissions
                     });
                     return;
                 }
-
-                // 进行边缘检测
-                android.graphics.Point[] detectedPoints = SmartCropper.scan(originalBitmap);
+                if (detectedPoints != null && detectedPoints.length == 4) {
+                    // 顶点坐标换算到原图
+                    scalePoints(detectedPoints, 1f * originalBitmap.getWidth() / scanWidth,
+                            1f * originalBitmap.getHeight() / scanHeight);
+                } else {
+                    detectedPoints = null;
+                }
                 
                 android.graphics.Bitmap processedBitmap = null;
                 
@@ -713,12 +734,20 @@ public class CameraActivity extends AppCompatActivity implements EasyPermissions
         });
     }
 
+    private static void scalePoints(android.graphics.Point[] points, float scaleX, float scaleY) {
+        for (android.graphics.Point point : points) {
+            point.x = Math.round(point.x * scaleX);
+            point.y = Math.round(point.y * scaleY);
+        }
+    }
+
     /**
      * 将Bitmap保存到文件
      */
     private void saveBitmapToFile(android.graphics.Bitmap bitmap, File file) {
-        try (FileOutputStream out = new FileOutputStream(file)) {
-            bitmap.compress(android.graphics.Bitmap.CompressFormat.JPEG, 90, out);
+        try {
+            // native 编码，ALPHA_8 的二值化结果直接输出灰度 JPEG
+            SmartCropper.encodeJpeg(bitmap, file.getPath(), new EncodeOptions().setQuality(90));
         } catch (IOException e) {
             Log.e(TAG, "Failed to save bitmap to file", e);
         }
@@ -1209,7 +1238,9 @@ public class CameraActivity extends AppCompatActivity implements EasyPermissions
                 }
 
                 // 按指定模式处理文档（带质量优化）
-                android.graphics.Bitmap processedBitmap = SmartCropper.processDocumentWithQualityOptimization(croppedBitmap, mode);
+                // 处理结果为单通道二值图，使用 ALPHA_8 输出以便直接编码为灰度 JPEG
+                android.graphics.Bitmap processedBitmap = SmartCropper.processDocumentWithQualityOptimization(
+                        croppedBitmap, mode, android.graphics.Bitmap.Config.ALPHA_8);
                 
                 // 清理中间结果
                 if (croppedBitmap != originalBitmap && croppedBitmap != processedBitmap) {
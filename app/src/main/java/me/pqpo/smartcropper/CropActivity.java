@@ -22,10 +22,10 @@ import androidx.core.content.FileProvider;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
 
+import me.pqpo.smartcropperlib.EncodeOptions;
 import me.pqpo.smartcropperlib.SmartCropper;
 import me.pqpo.smartcropperlib.view.CropImageView;
 import pub.devrel.easypermissions.EasyPermissions;
@@ -260,11 +260,8 @@ public class CropActivity extends AppCompatActivity implements EasyPermissions.P
 
     private void saveImage(Bitmap bitmap, File saveFile) {
         try {
-            FileOutputStream fos = new FileOutputStream(saveFile);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 100, fos);
-            fos.flush();
-            fos.close();
-            
+            SmartCropper.encodeJpeg(bitmap, saveFile.getPath(), new EncodeOptions().setQuality(100));
+
             // 保存到图库
             saveToGallery(saveFile);
         } catch (IOException e) {
@@ -0,0 +1,44 @@
+/*
+ * jconfig.h
+ *
+ * Configuration of the libjpeg-turbo static library bundled with OpenCV
+ * (opencv/3rdparty/<ABI>/liblibjpeg-turbo.a): libjpeg v6b API/ABI, 8-bit
+ * samples, arithmetic coding enabled, in-memory source/destination managers
+ * not compiled in.  The same header is valid for every ABI.
+ */
+
+#define JPEG_LIB_VERSION  62
+
+#define LIBJPEG_TURBO_VERSION  2.0.2
+
+#define LIBJPEG_TURBO_VERSION_NUMBER  2000002
+
+#define C_ARITH_CODING_SUPPORTED 1
+
+#define D_ARITH_CODING_SUPPORTED 1
+
+/* #undef MEM_SRCDST_SUPPORTED */
+
+#define WITH_SIMD 1
+
+#define BITS_IN_JSAMPLE  8      /* use 8 or 12 */
+
+#define HAVE_LOCALE_H 1
+
+#define HAVE_STDDEF_H 1
+
+#define HAVE_STDLIB_H 1
+
+#define NEED_SYS_TYPES_H 1
+
+/* #undef NEED_BSD_STRINGS */
+
+#define HAVE_UNSIGNED_CHAR 1
+
+#define HAVE_UNSIGNED_SHORT 1
+
+/* #undef INCOMPLETE_TYPES_BROKEN */
+
+/* #undef RIGHT_SHIFT_IS_UNSIGNED */
+
+/* #undef __CHAR_UNSIGNED__ */
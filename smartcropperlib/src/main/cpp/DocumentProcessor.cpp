@@ -0,0 +1,321 @@
+//
+// Document processing stages shared by the Bitmap and NativeImage APIs
+//
+
+#include <DocumentProcessor.h>
+#include "opencv2/photo.hpp"
+
+using namespace processor;
+using namespace cv;
+
+Mat DocumentProcessor::apply(const Mat &src, int op, int arg) {
+    Mat dst;
+    apply(src, dst, op, arg);
+    return dst;
+}
+
+void DocumentProcessor::apply(const Mat &src, Mat &dst, int op, int arg) {
+    switch (op) {
+        case OP_GRAYSCALE:
+            convertToGrayscale(src, dst);
+            break;
+        case OP_DENOISE:
+            denoise(src, dst);
+            break;
+        case OP_ENHANCE_CONTRAST:
+            enhanceContrast(src, dst);
+            break;
+        case OP_BINARIZE:
+            binarize(src, dst);
+            break;
+        case OP_ADVANCED_DOCUMENT:
+            advancedDocumentProcess(src, dst);
+            break;
+        case OP_SMART_BINARIZE:
+            smartBinarize(src, dst, arg);
+            break;
+        case OP_ADVANCED_DENOISE:
+            advancedDenoise(src, dst);
+            break;
+        case OP_DOCUMENT:
+            processDocument(src, dst);
+            break;
+        case OP_ADVANCED_PIPELINE:
+            processAdvancedDocument(src, dst, arg);
+            break;
+        case OP_DOCUMENT_MODE:
+            processDocumentByMode(src, dst, arg);
+            break;
+        case OP_QUALITY_OPTIMIZED:
+            processWithQualityOptimization(src, dst, arg);
+            break;
+        default:
+            src.copyTo(dst);
+            break;
+    }
+}
+
+void DocumentProcessor::toGray(const Mat &src, Mat &gray) {
+    if (src.channels() == 4) {
+        cvtColor(src, gray, COLOR_RGBA2GRAY);
+    } else if (src.channels() == 3) {
+        cvtColor(src, gray, COLOR_RGB2GRAY);
+    } else {
+        gray = src;
+    }
+}
+
+void DocumentProcessor::convertToGrayscale(const Mat &src, Mat &dst) {
+    if (src.channels() == 1) {
+        src.copyTo(dst);
+    } else {
+        toGray(src, dst);
+    }
+}
+
+void DocumentProcessor::denoise(const Mat &src, Mat &dst) {
+    // 使用高斯滤波进行降噪
+    GaussianBlur(src, dst, Size(5, 5), 0);
+}
+
+void DocumentProcessor::enhanceContrast(const Mat &src, Mat &dst) {
+    // 使用CLAHE（对比度限制自适应直方图均衡化）增强对比度
+    Ptr<CLAHE> clahe = createCLAHE(3.0, Size(8, 8));
+    if (src.channels() == 1) {
+        clahe->apply(src, dst);
+    } else {
+        // 对于彩色图像，转换到Lab色彩空间处理
+        Mat labMat;
+        if (src.channels() == 4) {
+            cvtColor(src, labMat, COLOR_RGBA2RGB);
+            cvtColor(labMat, labMat, COLOR_RGB2Lab);
+        } else {
+            cvtColor(src, labMat, COLOR_RGB2Lab);
+        }
+
+        std::vector<Mat> labChannels;
+        split(labMat, labChannels);
+        clahe->apply(labChannels[0], labChannels[0]);
+        merge(labChannels, labMat);
+
+        Mat rgbMat;
+        cvtColor(labMat, rgbMat, COLOR_Lab2RGB);
+        cvtColor(rgbMat, dst, COLOR_RGB2RGBA);
+    }
+}
+
+void DocumentProcessor::binarize(const Mat &src, Mat &dst) {
+    Mat grayMat;
+    toGray(src, grayMat);
+
+    // 使用自适应阈值二值化
+    adaptiveThreshold(grayMat, dst, 255, ADAPTIVE_THRESH_GAUSSIAN_C, THRESH_BINARY, 11, 2);
+}
+
+// 高级文档处理：包含形态学操作和背景分离
+void DocumentProcessor::advancedDocumentProcess(const Mat &src, Mat &dst) {
+    // 转换为BGR格式进行处理
+    Mat bgrMat;
+    if (src.channels() == 4) {
+        cvtColor(src, bgrMat, COLOR_RGBA2BGR);
+    } else if (src.channels() == 3) {
+        cvtColor(src, bgrMat, COLOR_RGB2BGR);
+    } else {
+        cvtColor(src, bgrMat, COLOR_GRAY2BGR);
+    }
+
+    // 步骤1：形态学操作去除文本内容
+    Mat morphMat;
+    Mat kernel = getStructuringElement(MORPH_RECT, Size(5, 5));
+    morphologyEx(bgrMat, morphMat, MORPH_CLOSE, kernel, Point(-1, -1), 3);
+
+    // 步骤2：GrabCut背景分离
+    Mat mask = Mat::zeros(morphMat.rows, morphMat.cols, CV_8UC1);
+    Mat bgdModel, fgdModel;
+
+    // 定义前景区域（留20像素边界）
+    Rect rect(20, 20, morphMat.cols - 40, morphMat.rows - 40);
+
+    // 执行GrabCut算法
+    grabCut(morphMat, mask, rect, bgdModel, fgdModel, 5, GC_INIT_WITH_RECT);
+
+    // 创建前景mask
+    Mat mask2;
+    compare(mask, GC_PR_FGD, mask2, CMP_EQ);
+    Mat mask3;
+    compare(mask, GC_FGD, mask3, CMP_EQ);
+    Mat finalMask = mask2 | mask3;
+
+    // 应用mask到原图
+    Mat result;
+    morphMat.copyTo(result, finalMask);
+
+    // 转换回RGBA格式
+    cvtColor(result, dst, COLOR_BGR2RGBA);
+}
+
+// 智能二值化：多种方法结合
+void DocumentProcessor::smartBinarize(const Mat &src, Mat &dst, int method) {
+    Mat grayMat;
+    toGray(src, grayMat);
+
+    switch (method) {
+        case 0: // 自适应高斯阈值
+            adaptiveThreshold(grayMat, dst, 255, ADAPTIVE_THRESH_GAUSSIAN_C, THRESH_BINARY, 11, 2);
+            break;
+        case 1: // 自适应均值阈值
+            adaptiveThreshold(grayMat, dst, 255, ADAPTIVE_THRESH_MEAN_C, THRESH_BINARY, 15, 7);
+            break;
+        case 2: // Otsu自动阈值
+            threshold(grayMat, dst, 0, 255, THRESH_BINARY + THRESH_OTSU);
+            break;
+        case 3: // 组合方法：先CLAHE再自适应阈值
+            {
+                Mat enhancedMat;
+                Ptr<CLAHE> clahe = createCLAHE(3.0, Size(8, 8));
+                clahe->apply(grayMat, enhancedMat);
+                adaptiveThreshold(enhancedMat, dst, 255, ADAPTIVE_THRESH_GAUSSIAN_C, THRESH_BINARY, 11, 2);
+            }
+            break;
+        default:
+            adaptiveThreshold(grayMat, dst, 255, ADAPTIVE_THRESH_GAUSSIAN_C, THRESH_BINARY, 11, 2);
+            break;
+    }
+}
+
+// 高级降噪：Non-local Means Denoising
+void DocumentProcessor::advancedDenoise(const Mat &src, Mat &dst) {
+    if (src.channels() == 1) {
+        // 灰度图像降噪
+        fastNlMeansDenoising(src, dst, 3, 7, 21);
+    } else {
+        // 彩色图像降噪
+        Mat bgrMat;
+        cvtColor(src, bgrMat, src.channels() == 4 ? COLOR_RGBA2BGR : COLOR_RGB2BGR);
+        Mat denoisedMat;
+        fastNlMeansDenoisingColored(bgrMat, denoisedMat, 3, 3, 7, 21);
+        cvtColor(denoisedMat, dst, COLOR_BGR2RGBA);
+    }
+}
+
+// 灰度图 -> 降噪 -> 加强对比度 -> 二值化
+void DocumentProcessor::processDocument(const Mat &src, Mat &dst) {
+    Mat gray, denoised, contrast;
+    convertToGrayscale(src, gray);
+    denoise(gray, denoised);
+    enhanceContrast(denoised, contrast);
+    binarize(contrast, dst);
+}
+
+// 高级文档处理（形态学操作+GrabCut） -> 灰度图 -> 高级降噪 -> 增强对比度 -> 智能二值化
+void DocumentProcessor::processAdvancedDocument(const Mat &src, Mat &dst, int binarizeMethod) {
+    Mat processed, gray, denoised, contrast;
+    advancedDocumentProcess(src, processed);
+    convertToGrayscale(processed, gray);
+    advancedDenoise(gray, denoised);
+    enhanceContrast(denoised, contrast);
+    smartBinarize(contrast, dst, binarizeMethod);
+}
+
+void DocumentProcessor::processDocumentByMode(const Mat &src, Mat &dst, int mode) {
+    Mat processed, gray, denoised, contrast;
+    switch (mode) {
+        case MODE_OCR_OPTIMIZED:
+            // OCR优化流程：高级背景分离 -> 高级降噪 -> 灰度转换 -> 对比度增强 -> 组合二值化
+            advancedDocumentProcess(src, processed);
+            advancedDenoise(processed, denoised);
+            convertToGrayscale(denoised, gray);
+            enhanceContrast(gray, contrast);
+            smartBinarize(contrast, dst, BINARIZE_COMBINED);
+            break;
+        case MODE_PRINTED_DOCUMENT:
+            // 打印文档流程：灰度转换 -> 适度降噪 -> 对比度增强 -> Otsu二值化
+            convertToGrayscale(src, gray);
+            denoise(gray, denoised);
+            enhanceContrast(denoised, contrast);
+            smartBinarize(contrast, dst, BINARIZE_OTSU);
+            break;
+        case MODE_HANDWRITTEN_DOCUMENT:
+            // 手写文档流程：灰度转换 -> 高级降噪 -> 轻微对比度增强 -> 自适应高斯二值化
+            convertToGrayscale(src, gray);
+            advancedDenoise(gray, denoised);
+            enhanceContrast(denoised, contrast);
+            smartBinarize(contrast, dst, BINARIZE_ADAPTIVE_GAUSSIAN);
+            break;
+        case MODE_WHITEBOARD:
+            // 白板模式流程：背景分离 -> 灰度转换 -> 强对比度增强 -> 自适应均值二值化
+            advancedDocumentProcess(src, processed);
+            convertToGrayscale(processed, gray);
+            enhanceContrast(gray, contrast);
+            smartBinarize(contrast, dst, BINARIZE_ADAPTIVE_MEAN);
+            break;
+        default:
+            processAdvancedDocument(src, dst, BINARIZE_COMBINED);
+            break;
+    }
+}
+
+// 根据文档质量自动调整处理参数
+void DocumentProcessor::processWithQualityOptimization(const Mat &src, Mat &dst, int mode) {
+    try {
+        int quality = evaluateQuality(src.cols, src.rows);
+        if (quality < 30) {
+            // 低质量：背景分离 -> 高级降噪 -> 灰度 -> 两次对比度增强 -> 组合二值化
+            Mat processed, denoised, gray, contrast, enhanced;
+            advancedDocumentProcess(src, processed);
+            advancedDenoise(processed, denoised);
+            convertToGrayscale(denoised, gray);
+            enhanceContrast(gray, contrast);
+            enhanceContrast(contrast, enhanced);
+            smartBinarize(enhanced, dst, BINARIZE_COMBINED);
+        } else if (quality > 80) {
+            // 高质量：轻度降噪后按模式选择二值化方法，保持细节
+            int binarizeMethod;
+            switch (mode) {
+                case MODE_OCR_OPTIMIZED:
+                    binarizeMethod = BINARIZE_COMBINED;
+                    break;
+                case MODE_PRINTED_DOCUMENT:
+                    binarizeMethod = BINARIZE_OTSU;
+                    break;
+                default:
+                    binarizeMethod = BINARIZE_ADAPTIVE_GAUSSIAN;
+                    break;
+            }
+            Mat gray, denoised;
+            convertToGrayscale(src, gray);
+            denoise(gray, denoised);
+            smartBinarize(denoised, dst, binarizeMethod);
+        } else {
+            // 中等质量：标准处理
+            processDocumentByMode(src, dst, mode);
+        }
+    } catch (cv::Exception &e) {
+        // 错误时使用标准处理
+        processDocumentByMode(src, dst, mode);
+    }
+}
+
+int DocumentProcessor::evaluateQuality(int width, int height) {
+    // 基础评分：根据图像尺寸和像素密度
+    int baseScore = 50;
+
+    // 尺寸加分：大尺寸图像通常质量更好
+    long long pixels = (long long) width * height;
+    if (pixels > 2000000) { // 2MP+
+        baseScore += 25;
+    } else if (pixels > 1000000) { // 1MP+
+        baseScore += 15;
+    } else if (pixels > 500000) { // 0.5MP+
+        baseScore += 10;
+    }
+
+    // 宽高比加分：文档的典型宽高比
+    float aspectRatio = (float) width / height;
+    if (aspectRatio > 0.7f && aspectRatio < 1.5f) {
+        baseScore += 10; // 接近正方形或文档比例
+    }
+
+    // 确保分数在有效范围内
+    return std::max(0, std::min(100, baseScore));
+}
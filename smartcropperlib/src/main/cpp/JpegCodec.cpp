@@ -0,0 +1,300 @@
+//
+// JPEG decode/encode on top of the libjpeg-turbo bundled with OpenCV
+//
+
+#include <cstdio>
+#include <csetjmp>
+#include <errno.h>
+#include <unistd.h>
+#include <JpegCodec.h>
+#include "jpeglib.h"
+
+using namespace codec;
+using namespace cv;
+
+namespace {
+
+    // libjpeg 出错时调用 error_exit，跳回 setjmp 处释放资源
+    struct ErrorManager {
+        jpeg_error_mgr pub;
+        jmp_buf setjmpBuffer;
+    };
+
+    void errorExit(j_common_ptr cinfo) {
+        ErrorManager *err = reinterpret_cast<ErrorManager *>(cinfo->err);
+        longjmp(err->setjmpBuffer, 1);
+    }
+
+    // 数据损坏的警告不输出到 stderr
+    void outputMessage(j_common_ptr cinfo) {
+    }
+
+    jpeg_error_mgr *initErrorManager(ErrorManager &err) {
+        jpeg_std_error(&err.pub);
+        err.pub.error_exit = errorExit;
+        err.pub.output_message = outputMessage;
+        return &err.pub;
+    }
+
+    // 内存数据源，库中没有编译 jpeg_mem_src
+    void initSource(j_decompress_ptr cinfo) {
+    }
+
+    boolean fillInputBuffer(j_decompress_ptr cinfo) {
+        // 数据已全部交给解码器，再请求数据说明文件被截断，插入 EOI 按截断的图片输出
+        static const JOCTET EOI_BUFFER[2] = {0xFF, JPEG_EOI};
+        cinfo->src->next_input_byte = EOI_BUFFER;
+        cinfo->src->bytes_in_buffer = 2;
+        return TRUE;
+    }
+
+    void skipInputData(j_decompress_ptr cinfo, long numBytes) {
+        if (numBytes <= 0) {
+            return;
+        }
+        jpeg_source_mgr *src = cinfo->src;
+        if (static_cast<size_t>(numBytes) > src->bytes_in_buffer) {
+            fillInputBuffer(cinfo);
+        } else {
+            src->next_input_byte += numBytes;
+            src->bytes_in_buffer -= numBytes;
+        }
+    }
+
+    void termSource(j_decompress_ptr cinfo) {
+    }
+
+    // 文件描述符输出，编码结果不在内存中整体缓冲
+    const size_t OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    struct FdDestination {
+        jpeg_destination_mgr pub;
+        int fd;
+        JOCTET *buffer;
+    };
+
+    bool writeFully(int fd, const JOCTET *data, size_t size) {
+        size_t written = 0;
+        while (written < size) {
+            ssize_t result = write(fd, data + written, size - written);
+            if (result < 0) {
+                if (errno == EINTR) {
+                    continue;
+                }
+                return false;
+            }
+            written += result;
+        }
+        return true;
+    }
+
+    void initDestination(j_compress_ptr cinfo) {
+        FdDestination *dest = reinterpret_cast<FdDestination *>(cinfo->dest);
+        dest->buffer = static_cast<JOCTET *>((*cinfo->mem->alloc_small)(
+                reinterpret_cast<j_common_ptr>(cinfo), JPOOL_IMAGE, OUTPUT_BUFFER_SIZE));
+        dest->pub.next_output_byte = dest->buffer;
+        dest->pub.free_in_buffer = OUTPUT_BUFFER_SIZE;
+    }
+
+    boolean emptyOutputBuffer(j_compress_ptr cinfo) {
+        // 按约定缓冲区此时总是写满的，忽略 free_in_buffer
+        FdDestination *dest = reinterpret_cast<FdDestination *>(cinfo->dest);
+        if (!writeFully(dest->fd, dest->buffer, OUTPUT_BUFFER_SIZE)) {
+            errorExit(reinterpret_cast<j_common_ptr>(cinfo));
+        }
+        dest->pub.next_output_byte = dest->buffer;
+        dest->pub.free_in_buffer = OUTPUT_BUFFER_SIZE;
+        return TRUE;
+    }
+
+    void termDestination(j_compress_ptr cinfo) {
+        FdDestination *dest = reinterpret_cast<FdDestination *>(cinfo->dest);
+        if (!writeFully(dest->fd, dest->buffer, OUTPUT_BUFFER_SIZE - dest->pub.free_in_buffer)) {
+            errorExit(reinterpret_cast<j_common_ptr>(cinfo));
+        }
+    }
+
+    // ITU-T T.81 Annex K.2 的色度量化表（自然顺序），与 jpeg_set_quality 使用的基础表相同
+    const unsigned int STD_CHROMINANCE_QUANT_TBL[DCTSIZE2] = {
+            17, 18, 24, 47, 99, 99, 99, 99,
+            18, 21, 26, 66, 99, 99, 99, 99,
+            24, 26, 56, 99, 99, 99, 99, 99,
+            47, 66, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99
+    };
+
+    // setjmp 所在的函数只持有 C 结构体，longjmp 不会跳过任何 C++ 析构
+    bool decompress(const uchar *data, size_t size, int scaleDenom, PixelFormat format, Mat &dst, bool &cmyk) {
+        jpeg_decompress_struct cinfo;
+        ErrorManager err;
+        jpeg_source_mgr src;
+        cinfo.err = initErrorManager(err);
+        if (setjmp(err.setjmpBuffer)) {
+            jpeg_destroy_decompress(&cinfo);
+            return false;
+        }
+        jpeg_create_decompress(&cinfo);
+        src.next_input_byte = data;
+        src.bytes_in_buffer = size;
+        src.init_source = initSource;
+        src.fill_input_buffer = fillInputBuffer;
+        src.skip_input_data = skipInputData;
+        src.resync_to_restart = jpeg_resync_to_restart;
+        src.term_source = termSource;
+        cinfo.src = &src;
+        jpeg_read_header(&cinfo, TRUE);
+
+        // CMYK 不能由 libjpeg 转换为 RGB 或灰度，按 CMYK 输出后再转换
+        cmyk = cinfo.jpeg_color_space == JCS_CMYK || cinfo.jpeg_color_space == JCS_YCCK;
+        if (cmyk) {
+            cinfo.out_color_space = JCS_CMYK;
+        } else if (format == FORMAT_GRAY) {
+            cinfo.out_color_space = JCS_GRAYSCALE;
+        } else {
+            cinfo.out_color_space = format == FORMAT_RGBA ? JCS_EXT_RGBA : JCS_EXT_RGB;
+        }
+        // DCT 缩放：直接以 1/2、1/4、1/8 的尺寸输出，不生成原尺寸的中间图像
+        cinfo.scale_num = 1;
+        cinfo.scale_denom = scaleDenom == 2 || scaleDenom == 4 || scaleDenom == 8 ? scaleDenom : 1;
+        jpeg_start_decompress(&cinfo);
+
+        try {
+            dst.create(cinfo.output_height, cinfo.output_width, CV_8UC(cinfo.output_components));
+        } catch (cv::Exception &e) {
+            jpeg_destroy_decompress(&cinfo);
+            return false;
+        }
+        while (cinfo.output_scanline < cinfo.output_height) {
+            JSAMPROW row = dst.ptr(cinfo.output_scanline);
+            jpeg_read_scanlines(&cinfo, &row, 1);
+        }
+        jpeg_finish_decompress(&cinfo);
+        jpeg_destroy_decompress(&cinfo);
+        return true;
+    }
+
+    // libjpeg 输出的 CMYK 与 Adobe 的约定一致，各分量已经反相
+    void cmykToRgb(const Mat &src, Mat &dst) {
+        dst.create(src.rows, src.cols, CV_8UC3);
+        for (int y = 0; y < src.rows; y++) {
+            const uchar *cmyk = src.ptr(y);
+            uchar *rgb = dst.ptr(y);
+            for (int x = 0; x < src.cols; x++, cmyk += 4, rgb += 3) {
+                int k = cmyk[3];
+                rgb[0] = static_cast<uchar>(cmyk[0] * k / 255);
+                rgb[1] = static_cast<uchar>(cmyk[1] * k / 255);
+                rgb[2] = static_cast<uchar>(cmyk[2] * k / 255);
+            }
+        }
+    }
+
+    bool compress(const Mat &image, int fd, int quality, int chromaQuality, int chromaSubsampling, bool progressive,
+                  bool optimize, bool grayscale) {
+        jpeg_compress_struct cinfo;
+        ErrorManager err;
+        FdDestination dest;
+        cinfo.err = initErrorManager(err);
+        if (setjmp(err.setjmpBuffer)) {
+            jpeg_destroy_compress(&cinfo);
+            return false;
+        }
+        jpeg_create_compress(&cinfo);
+        dest.fd = fd;
+        dest.buffer = NULL;
+        dest.pub.init_destination = initDestination;
+        dest.pub.empty_output_buffer = emptyOutputBuffer;
+        dest.pub.term_destination = termDestination;
+        cinfo.dest = &dest.pub;
+
+        int channels = image.channels();
+        cinfo.image_width = static_cast<JDIMENSION>(image.cols);
+        cinfo.image_height = static_cast<JDIMENSION>(image.rows);
+        cinfo.input_components = channels;
+        cinfo.in_color_space = channels == 1 ? JCS_GRAYSCALE : channels == 3 ? JCS_EXT_RGB : JCS_EXT_RGBA;
+        jpeg_set_defaults(&cinfo);
+        if (grayscale && channels > 1) {
+            // 由 libjpeg 在编码时转换为灰度，不生成中间图像
+            jpeg_set_colorspace(&cinfo, JCS_GRAYSCALE);
+        }
+        jpeg_set_quality(&cinfo, quality, TRUE);
+        if (cinfo.jpeg_color_space == JCS_YCbCr) {
+            // 色度分量固定 1x1，由亮度的采样因子决定下采样方式：444 为 1x1，422 为 2x1，420 为 2x2
+            cinfo.comp_info[0].h_samp_factor = chromaSubsampling == SUBSAMPLING_444 ? 1 : 2;
+            cinfo.comp_info[0].v_samp_factor = chromaSubsampling == SUBSAMPLING_420 ? 2 : 1;
+            for (int i = 1; i < cinfo.num_components; i++) {
+                cinfo.comp_info[i].h_samp_factor = 1;
+                cinfo.comp_info[i].v_samp_factor = 1;
+            }
+            if (chromaQuality > 0 && chromaQuality != quality) {
+                // jpeg_set_quality 之后覆盖色度分量使用的 1 号量化表
+                jpeg_add_quant_table(&cinfo, 1, STD_CHROMINANCE_QUANT_TBL, jpeg_quality_scaling(chromaQuality),
+                                     TRUE);
+            }
+        }
+        cinfo.optimize_coding = optimize ? TRUE : FALSE;
+        if (progressive) {
+            // 需在确定色彩空间后调用，扫描脚本按分量数生成
+            jpeg_simple_progression(&cinfo);
+        }
+        jpeg_start_compress(&cinfo, TRUE);
+        while (cinfo.next_scanline < cinfo.image_height) {
+            JSAMPROW row = const_cast<uchar *>(image.ptr(cinfo.next_scanline));
+            jpeg_write_scanlines(&cinfo, &row, 1);
+        }
+        jpeg_finish_compress(&cinfo);
+        jpeg_destroy_compress(&cinfo);
+        return true;
+    }
+}
+
+bool JpegCodec::isJpeg(const uchar *data, size_t size) {
+    return data != NULL && size >= 3 && data[0] == 0xFF && data[1] == 0xD8 && data[2] == 0xFF;
+}
+
+bool JpegCodec::decode(const uchar *data, size_t size, int scaleDenom, PixelFormat format, Mat &dst) {
+    if (!isJpeg(data, size)) {
+        return false;
+    }
+    Mat decoded;
+    bool cmyk = false;
+    if (!decompress(data, size, scaleDenom, format, decoded, cmyk)) {
+        return false;
+    }
+    if (!cmyk) {
+        dst = decoded;
+        return true;
+    }
+    Mat rgb;
+    cmykToRgb(decoded, rgb);
+    switch (format) {
+        case FORMAT_GRAY:
+            cvtColor(rgb, dst, COLOR_RGB2GRAY);
+            break;
+        case FORMAT_RGBA:
+            cvtColor(rgb, dst, COLOR_RGB2RGBA);
+            break;
+        default:
+            dst = rgb;
+            break;
+    }
+    return true;
+}
+
+bool JpegCodec::encode(const Mat &image, int fd, int quality, int chromaQuality, int chromaSubsampling,
+                       bool progressive, bool optimize, bool grayscale) {
+    if (fd < 0 || image.empty() || image.depth() != CV_8U) {
+        return false;
+    }
+    int channels = image.channels();
+    if (channels != 1 && channels != 3 && channels != 4) {
+        return false;
+    }
+    if (chromaSubsampling != SUBSAMPLING_444 && chromaSubsampling != SUBSAMPLING_422
+            && chromaSubsampling != SUBSAMPLING_420) {
+        return false;
+    }
+    return compress(image, fd, quality, chromaQuality, chromaSubsampling, progressive, optimize, grayscale);
+}
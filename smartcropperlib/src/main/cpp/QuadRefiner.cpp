@@ -0,0 +1,172 @@
+//
+// Coarse-to-fine corner refinement for quads found on the downscaled scan image
+//
+
+#include <QuadRefiner.h>
+
+using namespace scanner;
+using namespace cv;
+using namespace std;
+
+// 每条边最多的采样数，以及相邻采样点之间的最小间距
+static const int MAX_EDGE_SAMPLES = 64;
+static const float MIN_SAMPLE_SPACING = 8.0f;
+// 边缘两端各留出的比例，避开顶点附近的另一条边
+static const float EDGE_MARGIN = 0.1f;
+// 剖面中心差分的最小梯度，低于该值视为没有边缘
+static const float MIN_EDGE_GRADIENT = 12.0f;
+
+float QuadRefiner::searchRadiusForScale(float resizeScale) {
+    // 缩小图中 ±1 像素的误差放大到原图，再留出一倍余量
+    return std::max(3.0f, 2.0f * resizeScale);
+}
+
+bool QuadRefiner::sampleLuma(const Mat &image, float x, float y, float &luma) {
+    if (x < 0 || y < 0 || x > image.cols - 1 || y > image.rows - 1) {
+        return false;
+    }
+    int x0 = std::min(static_cast<int>(x), image.cols - 2);
+    int y0 = std::min(static_cast<int>(y), image.rows - 2);
+    x0 = std::max(x0, 0);
+    y0 = std::max(y0, 0);
+    float fx = x - x0;
+    float fy = y - y0;
+    int channels = image.channels();
+    // 亮度取前三个颜色通道的平均值，与通道顺序无关
+    int colorChannels = channels >= 3 ? 3 : 1;
+    float value[2][2];
+    for (int dy = 0; dy < 2; dy++) {
+        const uchar *row = image.ptr<uchar>(std::min(y0 + dy, image.rows - 1));
+        for (int dx = 0; dx < 2; dx++) {
+            const uchar *pixel = row + std::min(x0 + dx, image.cols - 1) * channels;
+            int sum = 0;
+            for (int c = 0; c < colorChannels; c++) {
+                sum += pixel[c];
+            }
+            value[dy][dx] = static_cast<float>(sum) / colorChannels;
+        }
+    }
+    luma = (value[0][0] * (1 - fx) + value[0][1] * fx) * (1 - fy)
+           + (value[1][0] * (1 - fx) + value[1][1] * fx) * fy;
+    return true;
+}
+
+bool QuadRefiner::fitEdge(const Mat &image, const Point2f &p1, const Point2f &p2, float searchRadius, Vec4f &line,
+                          float &inlierRatio) {
+    inlierRatio = 0;
+    Point2f dir = p2 - p1;
+    float length = static_cast<float>(norm(dir));
+    if (length < MIN_SAMPLE_SPACING * 2) {
+        return false;
+    }
+    dir *= 1.0f / length;
+    Point2f normal(-dir.y, dir.x);
+    int samples = std::min(MAX_EDGE_SAMPLES, static_cast<int>(length / MIN_SAMPLE_SPACING));
+    int radius = static_cast<int>(ceil(searchRadius));
+    int profileSize = radius * 2 + 1;
+
+    vector<float> profile(profileSize);
+    vector<Point2f> edgePoints;
+    edgePoints.reserve(samples);
+    for (int s = 0; s < samples; s++) {
+        float t = EDGE_MARGIN + (1 - 2 * EDGE_MARGIN) * (s + 0.5f) / samples;
+        Point2f base = p1 + dir * (t * length);
+        bool inside = true;
+        for (int k = 0; k < profileSize && inside; k++) {
+            Point2f p = base + normal * static_cast<float>(k - radius);
+            // 沿边缘方向取 3 个点平均，抑制噪声
+            float l0, l1, l2;
+            inside = sampleLuma(image, p.x - dir.x, p.y - dir.y, l0)
+                     && sampleLuma(image, p.x, p.y, l1)
+                     && sampleLuma(image, p.x + dir.x, p.y + dir.y, l2);
+            profile[k] = (l0 + 2 * l1 + l2) / 4;
+        }
+        if (!inside) {
+            continue;
+        }
+        // 中心差分求梯度，取绝对值最大的位置
+        int best = -1;
+        float bestGradient = MIN_EDGE_GRADIENT;
+        for (int k = 1; k < profileSize - 1; k++) {
+            float gradient = fabs(profile[k + 1] - profile[k - 1]);
+            if (gradient > bestGradient) {
+                bestGradient = gradient;
+                best = k;
+            }
+        }
+        if (best < 0) {
+            continue;
+        }
+        // 抛物线插值到亚像素
+        float offset = 0;
+        if (best > 1 && best < profileSize - 2) {
+            float g0 = fabs(profile[best] - profile[best - 2]);
+            float g2 = fabs(profile[best + 2] - profile[best]);
+            float denominator = g0 - 2 * bestGradient + g2;
+            if (denominator < 0) {
+                offset = 0.5f * (g0 - g2) / denominator;
+            }
+        }
+        edgePoints.push_back(base + normal * (best - radius + offset));
+    }
+    inlierRatio = 1.0f * edgePoints.size() / samples;
+    if (edgePoints.size() < std::max<size_t>(4, samples / 2)) {
+        return false;
+    }
+    fitLine(edgePoints, line, DIST_HUBER, 0, 0.01, 0.01);
+    return true;
+}
+
+bool QuadRefiner::intersect(const Vec4f &line1, const Vec4f &line2, Point2f &point) {
+    float cross = line1[0] * line2[1] - line1[1] * line2[0];
+    if (fabs(cross) < 1e-6f) {
+        return false;
+    }
+    float dx = line2[2] - line1[2];
+    float dy = line2[3] - line1[3];
+    float t = (dx * line2[1] - dy * line2[0]) / cross;
+    point = Point2f(line1[2] + line1[0] * t, line1[3] + line1[1] * t);
+    return true;
+}
+
+vector<Point2f> QuadRefiner::refine(const Mat &image, const vector<Point2f> &quad, float searchRadius,
+                                    float *confidence) {
+    if (confidence != NULL) {
+        *confidence = 0;
+    }
+    if (quad.size() != 4 || image.empty() || image.depth() != CV_8U) {
+        return quad;
+    }
+    // 第 i 条边从顶点 i 指向顶点 i+1，拟合失败时使用原来的边
+    Vec4f lines[4];
+    float inlierSum = 0;
+    for (int i = 0; i < 4; i++) {
+        const Point2f &p1 = quad[i];
+        const Point2f &p2 = quad[(i + 1) % 4];
+        float inlierRatio;
+        if (fitEdge(image, p1, p2, searchRadius, lines[i], inlierRatio)) {
+            inlierSum += inlierRatio;
+        } else {
+            Point2f dir = p2 - p1;
+            float length = static_cast<float>(norm(dir));
+            if (length <= 0) {
+                return quad;
+            }
+            lines[i] = Vec4f(dir.x / length, dir.y / length, p1.x, p1.y);
+        }
+    }
+    if (confidence != NULL) {
+        *confidence = inlierSum / 4;
+    }
+    // 顶点 i 为第 i-1 条边与第 i 条边的交点，偏离过远时保留原顶点
+    vector<Point2f> result(4);
+    for (int i = 0; i < 4; i++) {
+        Point2f corner;
+        if (intersect(lines[(i + 3) % 4], lines[i], corner) && norm(corner - quad[i]) <= searchRadius * 2) {
+            result[i] = corner;
+        } else {
+            result[i] = quad[i];
+        }
+    }
+    return result;
+}
@@ -0,0 +1,103 @@
+//
+// Temporal quad tracking across preview frames
+//
+
+#include <QuadTracker.h>
+#include <QuadRefiner.h>
+
+using namespace scanner;
+using namespace cv;
+using namespace std;
+
+// 跟踪时四条边检测到边缘的平均采样比例低于该值视为置信度不足
+static const float MIN_CONFIDENCE = 0.5f;
+// 连续置信度不足的帧数达到该值后重新完整扫描，之前保持上一帧的输出
+static const int MAX_LOW_CONFIDENCE_FRAMES = 2;
+// 以下比例均相对于帧的最长边
+// 相邻两帧之间顶点的最大移动范围，即跟踪时的搜索半径
+static const float TRACK_RADIUS_RATIO = 0.03f;
+// 顶点移动小于该距离时保持不变，消除抖动
+static const float DEADBAND_RATIO = 0.002f;
+// 顶点移动超过该距离时直接跳到新位置，不做平滑
+static const float SNAP_RATIO = 0.05f;
+// 死区和跳变之间按该系数逼近新位置
+static const float SMOOTHING_FACTOR = 0.5f;
+// 四边形面积占画面的最小比例
+static const float MIN_AREA_RATIO = 0.05f;
+
+QuadTracker::State QuadTracker::track(Mat &frame, const ScanOptions &options, vector<Point2f> &result) {
+    float maxSize = std::max(frame.cols, frame.rows);
+    State state = STATE_TRACKED;
+    if (tracking) {
+        float confidence;
+        vector<Point2f> quad = QuadRefiner::refine(frame, trackedQuad, std::max(3.0f, maxSize * TRACK_RADIUS_RATIO),
+                                                   &confidence);
+        if (confidence >= MIN_CONFIDENCE && isValidQuad(quad, frame.size())) {
+            trackedQuad = quad;
+            lowConfidenceFrames = 0;
+        } else if (++lowConfidenceFrames >= MAX_LOW_CONFIDENCE_FRAMES) {
+            tracking = false;
+        } else {
+            // 置信度不足但尚未判定丢失，保持上一帧的输出
+            result = smoothedQuad;
+            return STATE_TRACKED;
+        }
+    }
+    if (!tracking) {
+        if (!detect(frame, options)) {
+            smoothedQuad.clear();
+            result.clear();
+            return STATE_LOST;
+        }
+        state = STATE_DETECTED;
+    }
+    smooth(trackedQuad, maxSize);
+    result = smoothedQuad;
+    return state;
+}
+
+bool QuadTracker::detect(Mat &frame, const ScanOptions &options) {
+    scanner.reset(frame, true, options);
+    vector<Point2f> quad = scanner.scanPointF();
+    if (!scanner.isFound() || !isValidQuad(quad, frame.size())) {
+        return false;
+    }
+    trackedQuad = quad;
+    // 重新检测后直接使用新位置，不从旧位置平滑过渡
+    smoothedQuad.clear();
+    tracking = true;
+    lowConfidenceFrames = 0;
+    return true;
+}
+
+void QuadTracker::smooth(const vector<Point2f> &quad, float maxSize) {
+    if (smoothedQuad.size() != quad.size()) {
+        smoothedQuad = quad;
+        return;
+    }
+    float deadband = maxSize * DEADBAND_RATIO;
+    float snap = maxSize * SNAP_RATIO;
+    for (size_t i = 0; i < quad.size(); i++) {
+        Point2f delta = quad[i] - smoothedQuad[i];
+        double distance = norm(delta);
+        if (distance > snap) {
+            smoothedQuad[i] = quad[i];
+        } else if (distance > deadband) {
+            smoothedQuad[i] += delta * SMOOTHING_FACTOR;
+        }
+    }
+}
+
+bool QuadTracker::isValidQuad(const vector<Point2f> &quad, const Size &size) {
+    if (quad.size() != 4 || !isContourConvex(quad)) {
+        return false;
+    }
+    return fabs(contourArea(quad)) >= MIN_AREA_RATIO * size.area();
+}
+
+void QuadTracker::reset() {
+    tracking = false;
+    lowConfidenceFrames = 0;
+    trackedQuad.clear();
+    smoothedQuad.clear();
+}
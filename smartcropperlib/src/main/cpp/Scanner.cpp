@@ -2,116 +2,102 @@
 // Created by qiulinmin on 8/1/17.
 //
 #include <Scanner.h>
+#include <QuadRefiner.h>
 
 using namespace scanner;
 using namespace cv;
 using namespace std;
 
-static bool sortByArea(const vector<Point> &v1, const vector<Point> &v2) {
-    double v1Area = fabs(contourArea(Mat(v1)));
-    double v2Area = fabs(contourArea(Mat(v2)));
-    return v1Area > v2Area;
+const int Scanner::cannyValues[Scanner::CANNY_LEVELS] = {100, 150, 300};
+const int Scanner::blurValues[Scanner::BLUR_LEVELS] = {3, 7, 11, 15};
+const int Scanner::MAX_GRADIENT;
+
+// 一次线性遍历，每个轮廓的面积只计算一次，按面积从大到小保留前 k 个轮廓的下标
+static int selectLargestContours(const vector<vector<Point>> &contours, int *indices, int k) {
+    double areas[Scanner::CONTOUR_CANDIDATES];
+    int count = 0;
+    for (int i = 0; i < (int) contours.size(); i++) {
+        double area = fabs(contourArea(contours[i]));
+        if (count == k && area <= areas[k - 1]) {
+            continue;
+        }
+        int pos = count < k ? count++ : k - 1;
+        while (pos > 0 && areas[pos - 1] < area) {
+            areas[pos] = areas[pos - 1];
+            indices[pos] = indices[pos - 1];
+            pos--;
+        }
+        areas[pos] = area;
+        indices[pos] = i;
+    }
+    return count;
+}
+
+Scanner::Scanner() {
+}
+
+Scanner::Scanner(cv::Mat& bitmap, bool canny, const ScanOptions &options) {
+    reset(bitmap, canny, options);
 }
 
-Scanner::Scanner(cv::Mat& bitmap, bool canny) {
+void Scanner::reset(cv::Mat& bitmap, bool canny, const ScanOptions &options) {
     srcBitmap = bitmap;
     Scanner::canny = canny;
+    Scanner::options = options;
+    isHisEqual = false;
+    resizeScale = 1.0f;
 }
 
 Scanner::~Scanner() {
 }
 
 vector<Point> Scanner::scanPoint() {
+    if (!options.refine || !canny) {
+        InputRelease release(*this);
+        return scanCoarse();
+    }
+    vector<Point> result;
+    for (const Point2f &p : scanPointF()) {
+        result.push_back(Point(cvRound(p.x), cvRound(p.y)));
+    }
+    return result;
+}
+
+vector<Point2f> Scanner::scanPointF() {
+    InputRelease release(*this);
+    vector<Point> coarse = scanCoarse();
+    vector<Point2f> result(coarse.begin(), coarse.end());
+    // HED 边缘图不是原图，不在其上细化；超出时间预算时直接返回粗略结果
+    if (options.refine && canny && !timedOut) {
+        result = QuadRefiner::refine(srcBitmap, result, QuadRefiner::searchRadiusForScale(resizeScale));
+    }
+    return result;
+}
+
+vector<Point> Scanner::scanCoarse() {
+    timedOut = false;
+    deadline = options.budgetMillis > 0
+            ? getTickCount() + static_cast<int64>(options.budgetMillis * getTickFrequency() / 1000) : 0;
     vector<Point> result;
-    int cannyValue[] = {100, 150, 300};
-    int blurValue[] = {3, 7, 11, 15};
     //缩小图片尺寸
     Mat image = resizeImage();
-    for (int i = 0; i < 3; i++){
-        for (int j = 0; j < 4; j++){
-            //预处理图片
-            Mat scanImage = preprocessedImage(image, cannyValue[i], blurValue[j]);
-            vector<vector<Point>> contours;
-            //提取边框
-            findContours(scanImage, contours, RETR_EXTERNAL, CHAIN_APPROX_NONE);
-            //按面积排序
-            std::sort(contours.begin(), contours.end(), sortByArea);
-            if (contours.size() > 0) {
-                vector<Point> contour = contours[0];
-                double arc = arcLength(contour, true);
-                vector<Point> outDP;
-                //多变形逼近
-                approxPolyDP(Mat(contour), outDP, 0.01 * arc, true);
-                //筛选去除相近的点
-                vector<Point> selectedPoints = selectPoints(outDP);
-                if (selectedPoints.size() != 4) {
-                    //如果筛选出来之后不是四边形
-                    continue;
-                } else {
-                    int widthMin = selectedPoints[0].x;
-                    int widthMax = selectedPoints[0].x;
-                    int heightMin = selectedPoints[0].y;
-                    int heightMax = selectedPoints[0].y;
-                    for (int k = 0; k < 4; k++) {
-                        if (selectedPoints[k].x < widthMin) {
-                            widthMin = selectedPoints[k].x;
-                        }
-                        if (selectedPoints[k].x > widthMax) {
-                            widthMax = selectedPoints[k].x;
-                        }
-                        if (selectedPoints[k].y < heightMin) {
-                            heightMin = selectedPoints[k].y;
-                        }
-                        if (selectedPoints[k].y > heightMax) {
-                            heightMax = selectedPoints[k].y;
-                        }
-                    }
-                    //选择区域外围矩形面积
-                    int selectArea = (widthMax - widthMin) * (heightMax - heightMin);
-                    int imageArea = scanImage.cols * scanImage.rows;
-                    if (selectArea < (imageArea / 20)) {
-                        result.clear();
-                        //筛选出来的区域太小
-                        continue;
-                    } else {
-                        result = selectedPoints;
-                        if (result.size() != 4) {
-                            Point2f p[4];
-                            p[0] = Point2f(0, 0);
-                            p[1] = Point2f(image.cols, 0);
-                            p[2] = Point2f(image.cols, image.rows);
-                            p[3] = Point2f(0, image.rows);
-                            result.push_back(p[0]);
-                            result.push_back(p[1]);
-                            result.push_back(p[2]);
-                            result.push_back(p[3]);
-                        }
-                        for (Point &p : result) {
-                            p.x *= resizeScale;
-                            p.y *= resizeScale;
-                        }
-                        // 按左上，右上，右下，左下排序
-                        return sortPointClockwise(result);
-                    }
-                }
-            }
-        }
-    }
+    found = findQuad(image, result);
     //当没选出所需要区域时，如果还没做过直方图均衡化则尝试使用均衡化，但该操作只执行一次，若还无效，则判定为图片不能裁出有效区域，返回整张图
-    if (!isHisEqual){
+    //均衡化需要重新预处理并完整搜索一遍，是代价最高的策略，超出时间预算时跳过
+    //HED 边缘图不做均衡化，重试的输入完全相同，直接跳过
+    if (!found && canny && !isHisEqual && !pastDeadline()) {
         isHisEqual = true;
-        return scanPoint();
-    }
-    if (result.size() != 4) {
-        Point2f p[4];
-        p[0] = Point2f(0, 0);
-        p[1] = Point2f(image.cols, 0);
-        p[2] = Point2f(image.cols, image.rows);
-        p[3] = Point2f(0, image.rows);
-        result.push_back(p[0]);
-        result.push_back(p[1]);
-        result.push_back(p[2]);
-        result.push_back(p[3]);
+        found = findQuad(image, result);
+    }
+    if (!found && pastDeadline()) {
+        timedOut = true;
+    }
+    if (!found) {
+        result.clear();
+        result.push_back(Point(0, 0));
+        result.push_back(Point(image.cols, 0));
+        result.push_back(Point(image.cols, image.rows));
+        result.push_back(Point(0, image.rows));
     }
     for (Point &p : result) {
         p.x *= resizeScale;
@@ -121,6 +107,374 @@ vector<Point> Scanner::scanPoint() {
     return sortPointClockwise(result);
 }
 
+bool Scanner::findQuad(Mat &image, vector<Point> &result) {
+    //预处理图片：灰度图和各级模糊只计算一次，所有 Canny 阈值共用，中间结果写入成员缓冲复用内存
+    preprocessedImage(image);
+    if (!canny) {
+        return options.maskThreshold > 0 ? findQuadInSoftMask(result) : selectQuad(grayMat, result);
+    }
+    if (options.engine == ENGINE_LINES) {
+        return findQuadByLines(result);
+    }
+    if (options.adaptive) {
+        // 统计量估算的参数通常一次即可命中，失败时退回遍历所有参数组合
+        if (findQuadAdaptive(result)) {
+            return true;
+        }
+        if (pastDeadline()) {
+            timedOut = true;
+            return false;
+        }
+    }
+    if (options.parallel) {
+        // 并行任务只读共享模糊图，需要提前全部算好
+        for (int j = 0; j < BLUR_LEVELS; j++) {
+            blurredImage(j);
+        }
+    }
+    if (options.parallel || !options.firstHit) {
+        return findQuadInCandidates(result);
+    }
+    // 参数组合按代价从低到高排列：模糊核从小到大，每组之间检查时间预算
+    for (int i = 0; i < CANNY_LEVELS; i++) {
+        for (int j = 0; j < BLUR_LEVELS; j++) {
+            if ((i > 0 || j > 0) && pastDeadline()) {
+                timedOut = true;
+                return false;
+            }
+            Canny(blurredImage(j), cannyMat, 50, cannyValues[i], 3);
+            threshold(cannyMat, thresholdMat, 0, 255, THRESH_OTSU);
+            if (selectQuad(thresholdMat, result)) {
+                return true;
+            }
+        }
+    }
+    return false;
+}
+
+// 评估所有参数组合：并行时每个任务使用自己的边缘缓冲，模糊图只读共享
+bool Scanner::findQuadInCandidates(vector<Point> &result) {
+    const int count = CANNY_LEVELS * BLUR_LEVELS;
+    vector<vector<Point>> candidates(count);
+    vector<double> scores(count, -1);
+    vector<uchar> skipped(count, 0);
+    int imageArea = grayMat.cols * grayMat.rows;
+    auto evaluate = [&](const Range &range) {
+        for (int k = range.start; k < range.end; k++) {
+            // 第一组参数总会执行，保证有结果可用；之后超出时间预算的组合直接跳过
+            if (k > 0 && pastDeadline()) {
+                skipped[k] = 1;
+                continue;
+            }
+            // 与串行扫描顺序一致：Canny 阈值在外层，模糊级别在内层
+            const Mat &blurred = options.parallel ? blurMats[k % BLUR_LEVELS] : blurredImage(k % BLUR_LEVELS);
+            Mat &edgeMat = candidateMats[k];
+            Canny(blurred, edgeMat, 50, cannyValues[k / BLUR_LEVELS], 3);
+            threshold(edgeMat, edgeMat, 0, 255, THRESH_OTSU);
+            if (selectQuad(edgeMat, candidates[k])) {
+                scores[k] = scoreQuad(candidates[k], imageArea);
+            }
+        }
+    };
+    if (options.parallel) {
+        parallel_for_(Range(0, count), evaluate);
+    } else {
+        evaluate(Range(0, count));
+    }
+    int best = -1;
+    for (int k = 0; k < count; k++) {
+        if (skipped[k]) {
+            timedOut = true;
+        }
+        if (scores[k] < 0) {
+            continue;
+        }
+        if (options.firstHit) {
+            best = k;
+            break;
+        }
+        if (best < 0 || scores[k] > scores[best]) {
+            best = k;
+        }
+    }
+    if (best < 0) {
+        return false;
+    }
+    result = candidates[best];
+    return true;
+}
+
+// 直线引擎参数：Hough 投票阈值、最短线段（相对短边）、同一直线上线段的最大间隙和共线容差（相对长边）
+static const int LINE_VOTES = 40;
+static const float MIN_SEGMENT_RATIO = 0.1f;
+static const int MAX_SEGMENT_GAP = 10;
+static const float COLLINEAR_DISTANCE_RATIO = 0.015f;
+static const float COLLINEAR_COS = 0.996f;
+// 四条直线的交点允许超出画面的比例
+static const float CORNER_MARGIN_RATIO = 0.1f;
+// 四边形面积占画面的最小比例
+static const float MIN_LINE_QUAD_AREA_RATIO = 0.1f;
+
+// side：0 上，1 右，2 下，3 左
+bool Scanner::dominantLine(const vector<Vec4i> &segments, int side, const Size &size, Vec4f &line) {
+    bool horizontal = side % 2 == 0;
+    float tolerance = std::max(2.0f, COLLINEAR_DISTANCE_RATIO * std::max(size.width, size.height));
+    vector<int> candidates;
+    for (int i = 0; i < (int) segments.size(); i++) {
+        const Vec4i &s = segments[i];
+        int dx = abs(s[2] - s[0]);
+        int dy = abs(s[3] - s[1]);
+        if ((dx >= dy) != horizontal) {
+            continue;
+        }
+        float mid = horizontal ? (s[1] + s[3]) / 2.0f : (s[0] + s[2]) / 2.0f;
+        float half = horizontal ? size.height / 2.0f : size.width / 2.0f;
+        if ((side == 0 || side == 3) ? mid < half : mid >= half) {
+            candidates.push_back(i);
+        }
+    }
+    // 每条线段作为种子，累计与其共线的线段总长度，取支持度最高的一簇
+    int bestSeed = -1;
+    double bestSupport = 0;
+    for (int seed : candidates) {
+        const Vec4i &s = segments[seed];
+        Point2f p0(s[0], s[1]);
+        Point2f dir(s[2] - s[0], s[3] - s[1]);
+        float length = static_cast<float>(norm(dir));
+        dir *= 1.0f / length;
+        double support = 0;
+        for (int other : candidates) {
+            const Vec4i &o = segments[other];
+            Point2f odir(o[2] - o[0], o[3] - o[1]);
+            float olength = static_cast<float>(norm(odir));
+            if (fabs(odir.dot(dir)) < COLLINEAR_COS * olength) {
+                continue;
+            }
+            Point2f a = Point2f(o[0], o[1]) - p0;
+            Point2f b = Point2f(o[2], o[3]) - p0;
+            if (fabs(a.cross(dir)) <= tolerance && fabs(b.cross(dir)) <= tolerance) {
+                support += olength;
+            }
+        }
+        if (support > bestSupport) {
+            bestSupport = support;
+            bestSeed = seed;
+        }
+    }
+    if (bestSeed < 0) {
+        return false;
+    }
+    // 用整簇线段的端点拟合直线
+    const Vec4i &s = segments[bestSeed];
+    Point2f p0(s[0], s[1]);
+    Point2f dir(s[2] - s[0], s[3] - s[1]);
+    dir *= 1.0f / static_cast<float>(norm(dir));
+    vector<Point2f> points;
+    for (int other : candidates) {
+        const Vec4i &o = segments[other];
+        Point2f a(o[0], o[1]);
+        Point2f b(o[2], o[3]);
+        Point2f odir = b - a;
+        if (fabs(odir.dot(dir)) >= COLLINEAR_COS * norm(odir)
+            && fabs((a - p0).cross(dir)) <= tolerance && fabs((b - p0).cross(dir)) <= tolerance) {
+            points.push_back(a);
+            points.push_back(b);
+        }
+    }
+    fitLine(points, line, DIST_L2, 0, 0.01, 0.01);
+    return true;
+}
+
+bool Scanner::findQuadByLines(vector<Point> &result) {
+    // 中等模糊去除纹理，只做一次 Canny 和 Hough，代价约为轮廓扫描中的一组参数
+    Canny(blurredImage(1), cannyMat, 50, cannyValues[0], 3);
+    vector<Vec4i> segments;
+    Size size = cannyMat.size();
+    int minSize = std::min(size.width, size.height);
+    HoughLinesP(cannyMat, segments, 1, CV_PI / 180, LINE_VOTES, minSize * MIN_SEGMENT_RATIO, MAX_SEGMENT_GAP);
+    Vec4f lines[4];
+    for (int side = 0; side < 4; side++) {
+        if (!dominantLine(segments, side, size, lines[side])) {
+            return false;
+        }
+    }
+    // 左上 = 左∩上，右上 = 上∩右，右下 = 右∩下，左下 = 下∩左
+    Rect2f bounds(-CORNER_MARGIN_RATIO * size.width, -CORNER_MARGIN_RATIO * size.height,
+                  (1 + 2 * CORNER_MARGIN_RATIO) * size.width, (1 + 2 * CORNER_MARGIN_RATIO) * size.height);
+    vector<Point> quad;
+    for (int i = 0; i < 4; i++) {
+        Point2f corner;
+        if (!QuadRefiner::intersect(lines[(i + 3) % 4], lines[i], corner) || !bounds.contains(corner)) {
+            return false;
+        }
+        quad.push_back(Point(std::min(std::max(cvRound(corner.x), 0), size.width),
+                             std::min(std::max(cvRound(corner.y), 0), size.height)));
+    }
+    if (!isContourConvex(quad) || fabs(contourArea(quad)) < MIN_LINE_QUAD_AREA_RATIO * size.area()) {
+        return false;
+    }
+    result = quad;
+    return true;
+}
+
+// 自动 Canny 阈值：以亮度中值为中心上下浮动的比例
+static const double AUTO_CANNY_SIGMA = 0.33;
+// 梯度幅值中值（3x3 Sobel 的 |dx| + |dy|）达到这些值时依次使用更大的模糊核
+static const int NOISE_LEVELS[] = {12, 24, 40};
+
+void Scanner::estimateCannyParams(int &blurLevel, double &lowThreshold, double &highThreshold) {
+    int intensityHist[256] = {0};
+    std::fill(gradientHist, gradientHist + MAX_GRADIENT + 1, 0);
+    Sobel(grayMat, gradXMat, CV_16S, 1, 0, 3);
+    Sobel(grayMat, gradYMat, CV_16S, 0, 1, 3);
+    for (int y = 0; y < grayMat.rows; y++) {
+        const uchar *gray = grayMat.ptr<uchar>(y);
+        const short *dx = gradXMat.ptr<short>(y);
+        const short *dy = gradYMat.ptr<short>(y);
+        for (int x = 0; x < grayMat.cols; x++) {
+            intensityHist[gray[x]]++;
+            gradientHist[std::min(MAX_GRADIENT, abs(dx[x]) + abs(dy[x]))]++;
+        }
+    }
+    int half = grayMat.cols * grayMat.rows / 2;
+    int median = 0;
+    for (int count = 0; median < 255 && (count += intensityHist[median]) <= half; median++) {
+    }
+    int gradientMedian = 0;
+    for (int count = 0; gradientMedian < MAX_GRADIENT && (count += gradientHist[gradientMedian]) <= half;
+         gradientMedian++) {
+    }
+    blurLevel = 0;
+    while (blurLevel < BLUR_LEVELS - 1 && gradientMedian >= NOISE_LEVELS[blurLevel]) {
+        blurLevel++;
+    }
+    lowThreshold = std::max(0.0, (1 - AUTO_CANNY_SIGMA) * median);
+    highThreshold = std::min(255.0, (1 + AUTO_CANNY_SIGMA) * median);
+}
+
+bool Scanner::findQuadAdaptive(vector<Point> &result) {
+    int blurLevel;
+    double lowThreshold;
+    double highThreshold;
+    estimateCannyParams(blurLevel, lowThreshold, highThreshold);
+    Canny(blurredImage(blurLevel), cannyMat, lowThreshold, highThreshold, 3);
+    threshold(cannyMat, thresholdMat, 0, 255, THRESH_OTSU);
+    return selectQuad(thresholdMat, result);
+}
+
+// 四条边经过的像素在概率图上的平均值（0-1）
+static double edgeSupport(const vector<Point> &quad, const Mat &probMat) {
+    double sum = 0;
+    int count = 0;
+    for (int i = 0; i < 4; i++) {
+        LineIterator it(probMat, quad[i], quad[(i + 1) % 4], 8);
+        for (int j = 0; j < it.count; j++, ++it) {
+            sum += **it;
+            count++;
+        }
+    }
+    return count > 0 ? sum / count / 255 : 0;
+}
+
+// 轮廓在二值化后的概率图上提取，候选四边形中取 形状评分 * 边缘概率 最高的一个，
+// 避免面积最大但边缘不确定的轮廓（如背景纹理）抢先命中
+bool Scanner::findQuadInSoftMask(vector<Point> &result) {
+    threshold(grayMat, thresholdMat, options.maskThreshold, 255, THRESH_BINARY);
+    vector<vector<Point>> contours;
+    findContours(thresholdMat, contours, RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
+    int indices[CONTOUR_CANDIDATES];
+    int count = selectLargestContours(contours, indices, CONTOUR_CANDIDATES);
+    int imageArea = grayMat.cols * grayMat.rows;
+    double bestScore = 0;
+    vector<Point> quad;
+    for (int i = 0; i < count; i++) {
+        if (!selectQuadFromContour(contours[indices[i]], imageArea, quad)) {
+            continue;
+        }
+        double score = scoreQuad(quad, imageArea) * edgeSupport(quad, grayMat);
+        if (score > bestScore) {
+            bestScore = score;
+            result = quad;
+        }
+    }
+    return bestScore > 0;
+}
+
+double Scanner::scoreQuad(const vector<Point> &quad, int imageArea) {
+    vector<Point> hull;
+    convexHull(quad, hull);
+    if (hull.size() != 4 || imageArea <= 0) {
+        // 非凸四边形不可能是纸张
+        return 0;
+    }
+    double areaRatio = fabs(contourArea(hull)) / imageArea;
+    double maxCos = 0;
+    for (int i = 0; i < 4; i++) {
+        Point2d v1 = Point2d(hull[(i + 3) % 4] - hull[i]);
+        Point2d v2 = Point2d(hull[(i + 1) % 4] - hull[i]);
+        double length = norm(v1) * norm(v2);
+        if (length <= 0) {
+            return 0;
+        }
+        maxCos = std::max(maxCos, fabs(v1.dot(v2)) / length);
+    }
+    return areaRatio * (1 - maxCos);
+}
+
+bool Scanner::selectQuad(Mat &scanImage, vector<Point> &result) {
+    vector<vector<Point>> contours;
+    //提取边框，压缩存储只保留轮廓的拐点
+    findContours(scanImage, contours, RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
+    //按面积从大到小取候选轮廓，不做整体排序
+    int indices[CONTOUR_CANDIDATES];
+    int count = selectLargestContours(contours, indices, CONTOUR_CANDIDATES);
+    for (int i = 0; i < count; i++) {
+        if (selectQuadFromContour(contours[indices[i]], scanImage.cols * scanImage.rows, result)) {
+            return true;
+        }
+    }
+    return false;
+}
+
+bool Scanner::selectQuadFromContour(const vector<Point> &contour, int imageArea, vector<Point> &result) {
+    double arc = arcLength(contour, true);
+    vector<Point> outDP;
+    //多变形逼近
+    approxPolyDP(contour, outDP, 0.01 * arc, true);
+    //筛选去除相近的点
+    vector<Point> selectedPoints = selectPoints(outDP);
+    if (selectedPoints.size() != 4) {
+        //如果筛选出来之后不是四边形
+        return false;
+    }
+    int widthMin = selectedPoints[0].x;
+    int widthMax = selectedPoints[0].x;
+    int heightMin = selectedPoints[0].y;
+    int heightMax = selectedPoints[0].y;
+    for (int k = 0; k < 4; k++) {
+        if (selectedPoints[k].x < widthMin) {
+            widthMin = selectedPoints[k].x;
+        }
+        if (selectedPoints[k].x > widthMax) {
+            widthMax = selectedPoints[k].x;
+        }
+        if (selectedPoints[k].y < heightMin) {
+            heightMin = selectedPoints[k].y;
+        }
+        if (selectedPoints[k].y > heightMax) {
+            heightMax = selectedPoints[k].y;
+        }
+    }
+    //选择区域外围矩形面积
+    int selectArea = (widthMax - widthMin) * (heightMax - heightMin);
+    if (selectArea < (imageArea / 20)) {
+        //筛选出来的区域太小
+        return false;
+    }
+    result = selectedPoints;
+    return true;
+}
+
 Mat Scanner::resizeImage() {
     int width = srcBitmap.cols;
     int height = srcBitmap.rows;
@@ -130,29 +484,46 @@ Mat Scanner::resizeImage() {
         width = static_cast<int>(width / resizeScale);
         height = static_cast<int>(height / resizeScale);
         Size size(width, height);
-        Mat resizedBitmap(size, CV_8UC3);
-        resize(srcBitmap, resizedBitmap, size);
-        return resizedBitmap;
+        resize(srcBitmap, resizedMat, size);
+        return resizedMat;
     }
+    resizeScale = 1.0f;
     return srcBitmap;
 }
 
-Mat Scanner::preprocessedImage(Mat &image, int cannyValue, int blurValue) {
-    Mat grayMat;
-    cvtColor(image, grayMat, COLOR_BGR2GRAY);
-    if (!canny) {
-        return grayMat;
+void Scanner::preprocessedImage(Mat &image) {
+    if (image.channels() == 1) {
+        // 单通道输入直接使用，不做颜色转换
+        grayMat = image;
+    } else if (!canny) {
+        // 边缘图各通道相同，取第一个通道即可，不做加权灰度转换
+        extractChannel(image, convertedMat, 0);
+        grayMat = convertedMat;
+    } else {
+        cvtColor(image, convertedMat, image.channels() == 4 ? COLOR_RGBA2GRAY : COLOR_BGR2GRAY);
+        grayMat = convertedMat;
     }
-    if (isHisEqual){
-        equalizeHist(grayMat, grayMat);
+    if (canny && isHisEqual) {
+        // 输出到独立的缓冲，避免修改调用方的图像数据
+        equalizeHist(grayMat, equalizedMat);
+        grayMat = equalizedMat;
     }
-    Mat blurMat;
-    GaussianBlur(grayMat, blurMat, Size(blurValue, blurValue), 0);
-    Mat cannyMat;
-    Canny(blurMat, cannyMat, 50, cannyValue, 3);
-    Mat thresholdMat;
-    threshold(cannyMat, thresholdMat, 0, 255, THRESH_OTSU);
-    return thresholdMat;
+    // 灰度图已更新，之前的模糊结果失效
+    for (int j = 0; j < BLUR_LEVELS; j++) {
+        blurReady[j] = false;
+    }
+}
+
+const Mat &Scanner::blurredImage(int level) {
+    if (!blurReady[level]) {
+        GaussianBlur(grayMat, blurMats[level], Size(blurValues[level], blurValues[level]), 0);
+        blurReady[level] = true;
+    }
+    return blurMats[level];
+}
+
+bool Scanner::pastDeadline() const {
+    return deadline > 0 && getTickCount() >= deadline;
 }
 
 vector<Point> Scanner::selectPoints(vector<Point> points) {
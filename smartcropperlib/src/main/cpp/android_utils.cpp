@@ -11,10 +11,13 @@ void bitmap_to_mat(JNIEnv *env, jobject &srcBitmap, Mat &srcMat) {
         AndroidBitmap_lockPixels(env, srcBitmap, &srcPixels);
         uint32_t srcHeight = srcBitmapInfo.height;
         uint32_t srcWidth = srcBitmapInfo.width;
-        srcMat.create(srcHeight, srcWidth, CV_8UC4);
         if (srcBitmapInfo.format == ANDROID_BITMAP_FORMAT_RGBA_8888) {
             Mat tmp(srcHeight, srcWidth, CV_8UC4, srcPixels);
             tmp.copyTo(srcMat);
+        } else if (srcBitmapInfo.format == ANDROID_BITMAP_FORMAT_A_8) {
+            // ALPHA_8 保持单通道
+            Mat tmp(srcHeight, srcWidth, CV_8UC1, srcPixels, srcBitmapInfo.stride);
+            tmp.copyTo(srcMat);
         } else {
             Mat tmp = Mat(srcHeight, srcWidth, CV_8UC2, srcPixels);
             cvtColor(tmp, srcMat, COLOR_BGR5652RGBA);
@@ -51,6 +54,15 @@ void mat_to_bitmap(JNIEnv *env, Mat &srcMat, jobject &dstBitmap) {
             } else if (srcMat.type() == CV_8UC4) {
                 srcMat.copyTo(tmp);
             }
+        } else if (dstBitmapInfo.format == ANDROID_BITMAP_FORMAT_A_8) {
+            Mat tmp(dstHeight, dstWidth, CV_8UC1, dstPixels, dstBitmapInfo.stride);
+            if(srcMat.type() == CV_8UC1) {
+                srcMat.copyTo(tmp);
+            } else if (srcMat.type() == CV_8UC3) {
+                cvtColor(srcMat, tmp, COLOR_RGB2GRAY);
+            } else if (srcMat.type() == CV_8UC4) {
+                cvtColor(srcMat, tmp, COLOR_RGBA2GRAY);
+            }
         } else {
             Mat tmp = Mat(dstHeight, dstWidth, CV_8UC2, dstPixels);
             if(srcMat.type() == CV_8UC1) {
@@ -75,5 +87,76 @@ void mat_to_bitmap(JNIEnv *env, Mat &srcMat, jobject &dstBitmap) {
     }
 }
 
+LockedBitmap::LockedBitmap(JNIEnv *env, jobject bitmap) : env(env), bitmap(bitmap) {
+    if (AndroidBitmap_getInfo(env, bitmap, &info) < 0
+        || AndroidBitmap_lockPixels(env, bitmap, &pixels) < 0) {
+        pixels = 0;
+        jclass je = env->FindClass("java/lang/Exception");
+        env -> ThrowNew(je, "lock bitmap pixels failed");
+        return;
+    }
+    if (info.format == ANDROID_BITMAP_FORMAT_RGBA_8888) {
+        pixelMat = Mat(info.height, info.width, CV_8UC4, pixels, info.stride);
+    } else if (info.format == ANDROID_BITMAP_FORMAT_A_8) {
+        pixelMat = Mat(info.height, info.width, CV_8UC1, pixels, info.stride);
+    } else {
+        pixelMat = Mat(info.height, info.width, CV_8UC2, pixels, info.stride);
+    }
+}
 
+LockedBitmap::~LockedBitmap() {
+    if (pixels != 0) {
+        AndroidBitmap_unlockPixels(env, bitmap);
+    }
+}
 
+Mat LockedBitmap::rgba() {
+    if (isRGBA()) {
+        return pixelMat;
+    }
+    Mat rgbaMat;
+    if (isAlpha8()) {
+        cvtColor(pixelMat, rgbaMat, COLOR_GRAY2RGBA);
+    } else {
+        cvtColor(pixelMat, rgbaMat, COLOR_BGR5652RGBA);
+    }
+    return rgbaMat;
+}
+
+Mat LockedBitmap::image() {
+    if (isAlpha8()) {
+        return pixelMat;
+    }
+    return rgba();
+}
+
+void LockedBitmap::write(const Mat &srcMat) {
+    if (srcMat.data == pixelMat.data) {
+        return;
+    }
+    if (isAlpha8()) {
+        if(srcMat.type() == CV_8UC1) {
+            srcMat.copyTo(pixelMat);
+        } else if (srcMat.type() == CV_8UC3) {
+            cvtColor(srcMat, pixelMat, COLOR_RGB2GRAY);
+        } else if (srcMat.type() == CV_8UC4) {
+            cvtColor(srcMat, pixelMat, COLOR_RGBA2GRAY);
+        }
+    } else if (isRGBA()) {
+        if(srcMat.type() == CV_8UC1) {
+            cvtColor(srcMat, pixelMat, COLOR_GRAY2RGBA);
+        } else if (srcMat.type() == CV_8UC3) {
+            cvtColor(srcMat, pixelMat, COLOR_RGB2RGBA);
+        } else if (srcMat.type() == CV_8UC4) {
+            srcMat.copyTo(pixelMat);
+        }
+    } else {
+        if(srcMat.type() == CV_8UC1) {
+            cvtColor(srcMat, pixelMat, COLOR_GRAY2BGR565);
+        } else if (srcMat.type() == CV_8UC3) {
+            cvtColor(srcMat, pixelMat, COLOR_RGB2BGR565);
+        } else if (srcMat.type() == CV_8UC4) {
+            cvtColor(srcMat, pixelMat, COLOR_RGBA2BGR565);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+//
+// Document processing stages shared by the Bitmap and NativeImage APIs
+//
+
+#ifndef SMART_CROPPER_DOCUMENT_PROCESSOR_H
+#define SMART_CROPPER_DOCUMENT_PROCESSOR_H
+
+#include <opencv2/opencv.hpp>
+
+namespace processor {
+
+    // 与 SmartCropper.java 中的 OP_* 常量一一对应
+    enum Operation {
+        OP_GRAYSCALE = 0,
+        OP_DENOISE = 1,
+        OP_ENHANCE_CONTRAST = 2,
+        OP_BINARIZE = 3,
+        OP_ADVANCED_DOCUMENT = 4,
+        OP_SMART_BINARIZE = 5,
+        OP_ADVANCED_DENOISE = 6,
+        // 以下为完整处理流程，整个流程在一次调用内完成
+        OP_DOCUMENT = 7,
+        OP_ADVANCED_PIPELINE = 8,   // arg 为二值化方法
+        OP_DOCUMENT_MODE = 9,       // arg 为 DocumentMode
+        OP_QUALITY_OPTIMIZED = 10   // arg 为 DocumentMode
+    };
+
+    // 与 SmartCropper.DocumentMode 一一对应
+    enum DocumentMode {
+        MODE_OCR_OPTIMIZED = 0,
+        MODE_PRINTED_DOCUMENT = 1,
+        MODE_HANDWRITTEN_DOCUMENT = 2,
+        MODE_WHITEBOARD = 3
+    };
+
+    // 与 SmartCropper.BinarizeMethod 一一对应
+    enum BinarizeMethod {
+        BINARIZE_ADAPTIVE_GAUSSIAN = 0,
+        BINARIZE_ADAPTIVE_MEAN = 1,
+        BINARIZE_OTSU = 2,
+        BINARIZE_COMBINED = 3
+    };
+
+    /**
+     * 输入为 RGBA(4通道)、RGB(3通道) 或灰度(1通道)，输入只读；
+     * 灰度/二值结果保持单通道，彩色结果为 RGBA。
+     * dst 的尺寸和类型与结果一致时直接写入 dst 已有的内存（例如锁定的 Bitmap 像素），
+     * 否则重新分配；dst 不能与 src 共享内存。
+     */
+    class DocumentProcessor {
+    public:
+        static cv::Mat apply(const cv::Mat &src, int op, int arg);
+        static void apply(const cv::Mat &src, cv::Mat &dst, int op, int arg);
+
+        static void convertToGrayscale(const cv::Mat &src, cv::Mat &dst);
+        static void denoise(const cv::Mat &src, cv::Mat &dst);
+        static void enhanceContrast(const cv::Mat &src, cv::Mat &dst);
+        static void binarize(const cv::Mat &src, cv::Mat &dst);
+        static void advancedDocumentProcess(const cv::Mat &src, cv::Mat &dst);
+        static void smartBinarize(const cv::Mat &src, cv::Mat &dst, int method);
+        static void advancedDenoise(const cv::Mat &src, cv::Mat &dst);
+
+        // 完整处理流程，结果均为单通道二值图
+        // 灰度转换之后的中间结果保持单通道：CLAHE 直接作用于灰度值而不是 Lab 的 L 通道，
+        // 高级降噪使用单通道 NLM，与旧版 RGBA 灰度图的结果存在细微的像素差异
+        static void processDocument(const cv::Mat &src, cv::Mat &dst);
+        static void processAdvancedDocument(const cv::Mat &src, cv::Mat &dst, int binarizeMethod);
+        static void processDocumentByMode(const cv::Mat &src, cv::Mat &dst, int mode);
+        static void processWithQualityOptimization(const cv::Mat &src, cv::Mat &dst, int mode);
+
+        // 质量分数 (0-100)，与 SmartCropper.evaluateDocumentQuality 一致
+        static int evaluateQuality(int width, int height);
+
+    private:
+        static void toGray(const cv::Mat &src, cv::Mat &gray);
+    };
+}
+
+#endif //SMART_CROPPER_DOCUMENT_PROCESSOR_H
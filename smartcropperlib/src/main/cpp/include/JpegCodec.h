@@ -0,0 +1,44 @@
+//
+// JPEG decode/encode on top of the libjpeg-turbo bundled with OpenCV
+//
+
+#ifndef SMART_CROPPER_JPEG_CODEC_H
+#define SMART_CROPPER_JPEG_CODEC_H
+
+#include <opencv2/opencv.hpp>
+
+namespace codec {
+
+    // 解码输出的像素格式
+    enum PixelFormat {
+        FORMAT_GRAY = 0,
+        FORMAT_RGB = 1,
+        FORMAT_RGBA = 2
+    };
+
+    // 彩色 JPEG 的色度下采样方式，与 EncodeOptions.SUBSAMPLING_* 一致
+    enum ChromaSubsampling {
+        SUBSAMPLING_444 = 444,
+        SUBSAMPLING_422 = 422,
+        SUBSAMPLING_420 = 420
+    };
+
+    // 直接调用 libjpeg-turbo，不依赖 opencv_imgcodecs（其 WebP/EXR 解码器在 Android 上无法链接）
+    class JpegCodec {
+    public:
+        // 是否以 JPEG 的 SOI 标记开头
+        static bool isJpeg(const uchar *data, size_t size);
+
+        // 解码内存中的 JPEG，scaleDenom 为 2/4/8 时在 IDCT 阶段直接按 1/scaleDenom 缩小
+        // 与 BitmapFactory 一致，不按 EXIF 方向旋转；数据不是 JPEG 或已损坏时返回 false
+        static bool decode(const uchar *data, size_t size, int scaleDenom, PixelFormat format,
+                           cv::Mat &dst);
+
+        // 编码并写入文件描述符：单通道图像编码为灰度 JPEG，RGB/RGBA 图像按 grayscale 选项编码
+        // chromaQuality 大于 0 时色度分量单独使用该质量的量化表，chromaSubsampling 为 ChromaSubsampling 之一
+        static bool encode(const cv::Mat &image, int fd, int quality, int chromaQuality, int chromaSubsampling,
+                           bool progressive, bool optimize, bool grayscale);
+    };
+}
+
+#endif //SMART_CROPPER_JPEG_CODEC_H
@@ -0,0 +1,40 @@
+//
+// Coarse-to-fine corner refinement for quads found on the downscaled scan image
+//
+
+#ifndef CROPPER_QUAD_REFINER_H
+#define CROPPER_QUAD_REFINER_H
+
+#include <opencv2/opencv.hpp>
+
+namespace scanner {
+
+    /**
+     * 在原尺寸图像上细化缩小图中扫描得到的四边形。
+     * 只沿每条边的法线方向在 ±searchRadius 范围内采样亮度剖面，取梯度峰值（抛物线插值到亚像素）作为边缘点，
+     * 对每条边拟合直线后求相邻直线交点作为新顶点，不需要对整幅图像做灰度转换或边缘检测。
+     * 图像可以是单通道、BGR/RGB 或 RGBA，亮度取各颜色通道的平均值。
+     */
+    class QuadRefiner {
+    public:
+        // quad 顺序为 左上，右上，右下，左下；某条边拟合失败时保留该边原来的位置
+        // confidence 不为 NULL 时输出四条边上检测到边缘的采样比例的平均值（0-1），拟合失败的边计为 0
+        static std::vector<cv::Point2f> refine(const cv::Mat &image, const std::vector<cv::Point2f> &quad,
+                                               float searchRadius, float *confidence = NULL);
+
+        // 根据扫描时的缩放比例估算搜索半径
+        static float searchRadiusForScale(float resizeScale);
+
+        // 直线以 (vx, vy, x0, y0) 表示，平行时返回 false
+        static bool intersect(const cv::Vec4f &line1, const cv::Vec4f &line2, cv::Point2f &point);
+
+    private:
+        static bool sampleLuma(const cv::Mat &image, float x, float y, float &luma);
+
+        static bool fitEdge(const cv::Mat &image, const cv::Point2f &p1, const cv::Point2f &p2, float searchRadius,
+                            cv::Vec4f &line, float &inlierRatio);
+    };
+
+}
+
+#endif //CROPPER_QUAD_REFINER_H
@@ -0,0 +1,54 @@
+//
+// Temporal quad tracking across preview frames
+//
+
+#ifndef CROPPER_QUAD_TRACKER_H
+#define CROPPER_QUAD_TRACKER_H
+
+#include <opencv2/opencv.hpp>
+#include <Scanner.h>
+
+namespace scanner {
+
+    /**
+     * 预览帧之间的四边形跟踪。
+     * 首帧（或跟踪丢失后）完整扫描，之后每帧只在上一帧四条边附近的窄带内重新拟合边缘（见 QuadRefiner），
+     * 连续多帧置信度过低时才重新完整扫描。输出经过死区和指数平滑处理，避免预览叠加层抖动。
+     * 同一个 QuadTracker 同时只能在一个线程上使用。
+     */
+    class QuadTracker {
+    public:
+        enum State {
+            // 当前帧没有找到四边形
+            STATE_LOST = 0,
+            // 当前帧通过完整扫描找到四边形
+            STATE_DETECTED = 1,
+            // 当前帧沿用上一帧的四边形跟踪得到
+            STATE_TRACKED = 2
+        };
+
+        // frame 为单通道灰度图（如 Y 平面）、BGR 或 RGBA 图像，结果顺序为 左上，右上，右下，左下
+        State track(cv::Mat &frame, const ScanOptions &options, std::vector<cv::Point2f> &result);
+
+        void reset();
+
+    private:
+        Scanner scanner;
+
+        bool tracking = false;
+        int lowConfidenceFrames = 0;
+        // 未平滑的跟踪结果，作为下一帧的搜索位置，避免平滑带来的滞后
+        std::vector<cv::Point2f> trackedQuad;
+        // 输出给调用方的平滑结果
+        std::vector<cv::Point2f> smoothedQuad;
+
+        bool detect(cv::Mat &frame, const ScanOptions &options);
+
+        void smooth(const std::vector<cv::Point2f> &quad, float maxSize);
+
+        static bool isValidQuad(const std::vector<cv::Point2f> &quad, const cv::Size &size);
+    };
+
+}
+
+#endif //CROPPER_QUAD_TRACKER_H
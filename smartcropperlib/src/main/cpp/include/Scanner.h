@@ -9,31 +9,154 @@
 
 namespace scanner{
 
+    // 与 SmartCropper 的 ScanEngines 对应
+    enum ScanEngine {
+        // 多组 Canny/模糊参数下提取轮廓并逼近四边形
+        ENGINE_CONTOUR = 0,
+        // 在边缘图上检测直线段，取上下左右四条主导直线求交
+        ENGINE_LINES = 1
+    };
+
+    // 与 SmartCropper 的 ScanOptions 对应
+    struct ScanOptions {
+        // 使用 cv::parallel_for_ 并行评估所有 Canny/模糊参数组合
+        bool parallel = false;
+        // true：按参数顺序取第一个通过面积检查的四边形（与串行扫描结果一致）；false：取评分最高的四边形
+        bool firstHit = true;
+        // 在原尺寸图像上沿缩小图中找到的四边形边缘细化顶点，见 QuadRefiner
+        bool refine = false;
+        // 扫描时间预算（毫秒），小于等于 0 时不限时；超出后不再尝试新的参数组合，返回已找到的最佳结果
+        int budgetMillis = 0;
+        // 使用 Canny 时的扫描方式，HED 边缘图始终按轮廓扫描
+        ScanEngine engine = ENGINE_CONTOUR;
+        // 先按图像统计量估算 Canny 阈值和模糊级别只扫描一次，失败时再遍历所有参数组合
+        bool adaptive = false;
+        // 大于 0 时不做 Canny 的输入为边缘概率图（0-255），按该阈值二值化提取轮廓，候选四边形按边上的平均概率加权评分；
+        // 为 0 时输入为二值掩码
+        int maskThreshold = 0;
+    };
+
     class Scanner {
     public:
-        int resizeThreshold = 500;
+        // 扫描前将图片最长边缩小到该尺寸
+        static const int DEFAULT_RESIZE_THRESHOLD = 500;
+
+        int resizeThreshold = DEFAULT_RESIZE_THRESHOLD;
 
-        Scanner(cv::Mat& bitmap, bool canny);
+        // 每组参数下参与四边形筛选的最大轮廓数
+        static const int CONTOUR_CANDIDATES = 3;
+
+        Scanner();
+
+        // bitmap 为 BGR 三通道、RGBA 四通道或单通道灰度图（如相机 YUV 数据的 Y 平面），灰度图不做颜色转换
+        Scanner(cv::Mat& bitmap, bool canny, const ScanOptions &options = ScanOptions());
         virtual ~Scanner();
+
+        // 复用同一个 Scanner 扫描新的图像，中间缓冲保留上次的尺寸，分辨率不变时扫描过程中不再重新分配
+        // 扫描期间 bitmap 的像素需保持有效，同一个 Scanner 不能同时在多个线程上使用；
+        // scanPoint/scanPointF 返回后不再引用 bitmap，再次扫描前需重新 reset
+        void reset(cv::Mat& bitmap, bool canny, const ScanOptions &options = ScanOptions());
+
         std::vector<cv::Point> scanPoint();
+
+        // 返回亚像素坐标，options.refine 为 true 且使用 Canny 时在原尺寸图像上细化，否则与 scanPoint 相同
+        std::vector<cv::Point2f> scanPointF();
+
+        // 最近一次扫描是否因超出时间预算提前结束
+        bool isTimedOut() const { return timedOut; }
+
+        // 最近一次扫描是否找到了四边形，为 false 时扫描结果为整张图片
+        bool isFound() const { return found; }
+
+        // 按左上，右上，右下，左下排序
+        std::vector<cv::Point> sortPointClockwise(std::vector<cv::Point> vector);
     private:
+        // 扫描返回（包括抛出异常）时释放 srcBitmap 和 grayMat，长期复用的 Scanner 不持有调用方的像素
+        struct InputRelease {
+            Scanner &scanner;
+            explicit InputRelease(Scanner &scanner) : scanner(scanner) {}
+            ~InputRelease() {
+                scanner.srcBitmap.release();
+                scanner.grayMat.release();
+            }
+        };
+
         cv::Mat srcBitmap;
         float resizeScale = 1.0f;
 
         bool canny = true;
 
+        ScanOptions options;
+
         bool isHisEqual = false;
 
+        // 本次扫描的截止时间（getTickCount 计数），未设置时间预算时为 0
+        int64 deadline = 0;
+        bool timedOut = false;
+        bool found = false;
+
+        static const int CANNY_LEVELS = 3;
+        static const int BLUR_LEVELS = 4;
+        static const int cannyValues[CANNY_LEVELS];
+        static const int blurValues[BLUR_LEVELS];
+
+        // 预处理中间结果，一次扫描内所有参数组合共用，重复写入时复用已分配的内存
+        // grayMat 只是指向当前灰度图的引用（可能是调用方的单通道图像），写入只使用下面独立的缓冲
+        cv::Mat resizedMat;
+        cv::Mat grayMat;
+        cv::Mat convertedMat;
+        cv::Mat equalizedMat;
+        cv::Mat blurMats[BLUR_LEVELS];
+        bool blurReady[BLUR_LEVELS] = {};
+        cv::Mat cannyMat;
+        cv::Mat thresholdMat;
+        cv::Mat gradXMat;
+        cv::Mat gradYMat;
+        // 3x3 Sobel 的 |dx| + |dy| 最大为 4 * 255 * 2，直方图随 Scanner 复用，不在每次扫描时分配
+        static const int MAX_GRADIENT = 4 * 255 * 2;
+        int gradientHist[MAX_GRADIENT + 1];
+        // 评估所有参数组合时每组参数独立的边缘缓冲，并行任务之间互不共享
+        cv::Mat candidateMats[CANNY_LEVELS * BLUR_LEVELS];
+
         cv::Mat resizeImage();
 
-        cv::Mat preprocessedImage(cv::Mat &image, int cannyValue, int blurValue);
+        std::vector<cv::Point> scanCoarse();
+
+        void preprocessedImage(cv::Mat &image);
+
+        // 按需计算模糊级别，找到四边形后不再计算更大的模糊核
+        const cv::Mat &blurredImage(int level);
+
+        bool pastDeadline() const;
+
+        bool findQuad(cv::Mat &image, std::vector<cv::Point> &result);
+
+        bool selectQuad(cv::Mat &scanImage, std::vector<cv::Point> &result);
+
+        bool selectQuadFromContour(const std::vector<cv::Point> &contour, int imageArea, std::vector<cv::Point> &result);
+
+        bool findQuadInCandidates(std::vector<cv::Point> &result);
+
+        bool findQuadAdaptive(std::vector<cv::Point> &result);
+
+        bool findQuadInSoftMask(std::vector<cv::Point> &result);
+
+        // 由 grayMat 的亮度中值估算 Canny 阈值，由梯度幅值中值（近似噪声强度）选择模糊级别
+        void estimateCannyParams(int &blurLevel, double &lowThreshold, double &highThreshold);
+
+        // 在 grayMat 的边缘图上检测直线段，按上下左右四组各取支持度最高的共线线段拟合直线，相邻直线求交得到顶点
+        bool findQuadByLines(std::vector<cv::Point> &result);
+
+        static bool dominantLine(const std::vector<cv::Vec4i> &segments, int side, const cv::Size &size,
+                                 cv::Vec4f &line);
+
+        // 四边形评分：面积占比 * 直角程度，越接近铺满画面的矩形分数越高
+        static double scoreQuad(const std::vector<cv::Point> &quad, int imageArea);
 
         cv::Point choosePoint(cv::Point center, std::vector<cv::Point> &points, int type);
 
         std::vector<cv::Point> selectPoints(std::vector<cv::Point> points);
 
-        std::vector<cv::Point> sortPointClockwise(std::vector<cv::Point> vector);
-
         long long pointSideLine(cv::Point& lineP1, cv::Point& lineP2, cv::Point& point);
     };
 
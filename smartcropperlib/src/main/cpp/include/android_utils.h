@@ -14,4 +14,43 @@ void bitmap_to_mat(JNIEnv *env, jobject &srcBitmap, Mat &srcMat);
 
 void mat_to_bitmap(JNIEnv *env, Mat &srcMat, jobject &dstBitmap);
 
+/**
+ * 锁定 Bitmap 像素并直接以 Mat 引用，不做拷贝，析构时自动解锁。
+ * 只读操作直接使用 mat()/rgba()，结果也可以直接写入 mat()，
+ * 只有确实需要私有缓冲时才调用 clone/copyTo。
+ */
+class LockedBitmap {
+public:
+    LockedBitmap(JNIEnv *env, jobject bitmap);
+    ~LockedBitmap();
+
+    bool isLocked() const { return pixels != 0; }
+    bool isRGBA() const { return info.format == ANDROID_BITMAP_FORMAT_RGBA_8888; }
+    bool isAlpha8() const { return info.format == ANDROID_BITMAP_FORMAT_A_8; }
+    int width() const { return info.width; }
+    int height() const { return info.height; }
+
+    // 直接指向像素内存的 Mat：RGBA_8888 为 CV_8UC4，ALPHA_8 为 CV_8UC1，RGB_565 为 CV_8UC2
+    Mat &mat() { return pixelMat; }
+
+    // RGBA 视图：RGBA_8888 时零拷贝，其他格式才转换到私有缓冲
+    Mat rgba();
+
+    // 处理用视图：ALPHA_8 保持单通道，其余同 rgba()
+    Mat image();
+
+    // 将 srcMat 写入已锁定的像素，格式转换规则与 mat_to_bitmap 相同
+    void write(const Mat &srcMat);
+
+private:
+    JNIEnv *env;
+    jobject bitmap;
+    void *pixels = 0;
+    AndroidBitmapInfo info;
+    Mat pixelMat;
+
+    LockedBitmap(const LockedBitmap &) = delete;
+    LockedBitmap &operator=(const LockedBitmap &) = delete;
+};
+
 #endif //IMG_ANDROID_UTILS_H
@@ -3,16 +3,25 @@
 //
 #include <jni.h>
 #include <string>
+#include <errno.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
 #include <android_utils.h>
 #include <Scanner.h>
+#include <QuadRefiner.h>
+#include <QuadTracker.h>
 #include <SSIMCalculator.h>
-#include "opencv2/photo.hpp"
+#include <DocumentProcessor.h>
+#include <JpegCodec.h>
 
 using namespace std;
 using namespace cv;
 
 static const char* const kClassDocScanner = "me/pqpo/smartcropperlib/SmartCropper";
 
+// 所有类、方法和字段 ID 在 JNI_OnLoad 中缓存一次，调用时不再 FindClass/GetFieldID
 static struct {
     jclass jClassPoint;
     jmethodID jMethodInit;
@@ -20,317 +29,901 @@ static struct {
     jfieldID jFieldIDY;
 } gPointInfo;
 
+static struct {
+    jclass jClassException;
+} gExceptionInfo;
+
+static struct {
+    jfieldID jFieldIDDescriptor;
+} gFileDescriptorInfo;
+
+static struct {
+    jfieldID jFieldIDParallel;
+    jfieldID jFieldIDFirstHit;
+    jfieldID jFieldIDRefine;
+    jfieldID jFieldIDBudgetMillis;
+    jfieldID jFieldIDEngineType;
+    jfieldID jFieldIDAdaptive;
+} gScanOptionsInfo;
+
 static void initClassInfo(JNIEnv *env) {
     gPointInfo.jClassPoint = reinterpret_cast<jclass>(env -> NewGlobalRef(env -> FindClass("android/graphics/Point")));
     gPointInfo.jMethodInit = env -> GetMethodID(gPointInfo.jClassPoint, "<init>", "(II)V");
     gPointInfo.jFieldIDX = env -> GetFieldID(gPointInfo.jClassPoint, "x", "I");
     gPointInfo.jFieldIDY = env -> GetFieldID(gPointInfo.jClassPoint, "y", "I");
+    gExceptionInfo.jClassException = reinterpret_cast<jclass>(env -> NewGlobalRef(env -> FindClass("java/lang/Exception")));
+    jclass classFileDescriptor = env -> FindClass("java/io/FileDescriptor");
+    gFileDescriptorInfo.jFieldIDDescriptor = env -> GetFieldID(classFileDescriptor, "descriptor", "I");
+    env -> DeleteLocalRef(classFileDescriptor);
+    jclass classScanOptions = env -> FindClass("me/pqpo/smartcropperlib/ScanOptions");
+    gScanOptionsInfo.jFieldIDParallel = env -> GetFieldID(classScanOptions, "parallel", "Z");
+    gScanOptionsInfo.jFieldIDFirstHit = env -> GetFieldID(classScanOptions, "firstHit", "Z");
+    gScanOptionsInfo.jFieldIDRefine = env -> GetFieldID(classScanOptions, "refine", "Z");
+    gScanOptionsInfo.jFieldIDBudgetMillis = env -> GetFieldID(classScanOptions, "budgetMillis", "I");
+    gScanOptionsInfo.jFieldIDEngineType = env -> GetFieldID(classScanOptions, "engineType", "I");
+    gScanOptionsInfo.jFieldIDAdaptive = env -> GetFieldID(classScanOptions, "adaptive", "Z");
+    env -> DeleteLocalRef(classScanOptions);
+}
+
+static void throwJavaException(JNIEnv *env, const char *msg) {
+    env -> ThrowNew(gExceptionInfo.jClassException, msg);
+}
+
+// Java 端 ScanOptions 转换为 native 参数，为 null 时使用默认参数
+static scanner::ScanOptions toScanOptions(JNIEnv *env, jobject options_) {
+    scanner::ScanOptions options;
+    if (options_ != NULL) {
+        options.parallel = env -> GetBooleanField(options_, gScanOptionsInfo.jFieldIDParallel);
+        options.firstHit = env -> GetBooleanField(options_, gScanOptionsInfo.jFieldIDFirstHit);
+        options.refine = env -> GetBooleanField(options_, gScanOptionsInfo.jFieldIDRefine);
+        options.budgetMillis = env -> GetIntField(options_, gScanOptionsInfo.jFieldIDBudgetMillis);
+        options.engine = env -> GetIntField(options_, gScanOptionsInfo.jFieldIDEngineType) == scanner::ENGINE_LINES
+                ? scanner::ENGINE_LINES : scanner::ENGINE_CONTOUR;
+        options.adaptive = env -> GetBooleanField(options_, gScanOptionsInfo.jFieldIDAdaptive);
+    }
+    return options;
+}
+
+// 顶点以 x0, y0, x1, y1 ... 的顺序写入 int[8]
+static void writeQuad(JNIEnv *env, const std::vector<Point> &points, jintArray outQuad_) {
+    jint quad[8];
+    for (int i = 0; i < 4; ++i) {
+        quad[i * 2] = points[i].x;
+        quad[i * 2 + 1] = points[i].y;
+    }
+    env -> SetIntArrayRegion(outQuad_, 0, 8, quad);
+}
+
+// 亚像素顶点以 x0, y0, x1, y1 ... 的顺序写入 float[8]
+static void writeQuad(JNIEnv *env, const std::vector<Point2f> &points, jfloatArray outQuad_) {
+    jfloat quad[8];
+    for (int i = 0; i < 4; ++i) {
+        quad[i * 2] = points[i].x;
+        quad[i * 2 + 1] = points[i].y;
+    }
+    env -> SetFloatArrayRegion(outQuad_, 0, 8, quad);
+}
+
+static std::vector<Point> roundQuad(const std::vector<Point2f> &points) {
+    std::vector<Point> result;
+    for (const Point2f &point : points) {
+        result.push_back(Point(cvRound(point.x), cvRound(point.y)));
+    }
+    return result;
+}
+
+// ScanContext：Java 端持有的 scanner::Scanner 指针，多次扫描之间复用中间缓冲
+static inline scanner::Scanner *toScanContext(jlong ptr) {
+    return reinterpret_cast<scanner::Scanner *>(ptr);
+}
+
+static jlong native_scanContextCreate(JNIEnv *env, jclass type) {
+    return reinterpret_cast<jlong>(new scanner::Scanner());
+}
+
+static void native_scanContextRelease(JNIEnv *env, jclass type, jlong ptr) {
+    delete toScanContext(ptr);
+}
+
+// 与 ScanEngines 中的引擎类型对应，HED 引擎传入的是边缘图，按轮廓扫描且不做 Canny
+static const int ENGINE_TYPE_HED = 2;
+
+// 与 SmartCropper 的 SCAN_* 常量对应，区分超出时间预算和无法扫描（此时不写入顶点）
+enum ScanStatus {
+    SCAN_COMPLETED = 0,
+    SCAN_TIMED_OUT = 1,
+    SCAN_FAILED = 2
+};
+
+// contextPtr 为 0 时使用临时的 Scanner；timedOut 可为 NULL，返回扫描是否因超出时间预算提前结束
+static bool scanBitmap(JNIEnv *env, jobject srcBitmap, jint engineType, jobject options_, jlong contextPtr,
+                       std::vector<Point2f> &scanPoints, bool *timedOut = NULL) {
+    scanner::ScanOptions options = toScanOptions(env, options_);
+    bool canny = engineType != ENGINE_TYPE_HED;
+    options.engine = engineType == scanner::ENGINE_LINES ? scanner::ENGINE_LINES : scanner::ENGINE_CONTOUR;
+    // 在锁定的 RGBA 像素上直接扫描，不再转换出一份原尺寸的 BGR 图像
+    LockedBitmap src(env, srcBitmap);
+    if (!src.isLocked()) {
+        return false;
+    }
+    // 边缘图（ALPHA_8 二值掩码）保持单通道，其他格式按 RGBA 扫描
+    Mat scanMat = canny ? src.rgba() : src.image();
+    scanner::Scanner localScanner;
+    scanner::Scanner &docScanner = contextPtr != 0 ? *toScanContext(contextPtr) : localScanner;
+    docScanner.reset(scanMat, canny, options);
+    scanPoints = docScanner.scanPointF();
+    if (timedOut != NULL) {
+        *timedOut = docScanner.isTimedOut();
+    }
+    return scanPoints.size() == 4;
+}
+
+// 不创建任何 Java 对象，返回 ScanStatus
+static jint native_scanInto(JNIEnv *env, jclass type, jobject srcBitmap, jintArray outQuad_, jint engineType,
+                            jobject options_, jlong contextPtr) {
+    if (env -> GetArrayLength(outQuad_) < 8) {
+        return SCAN_FAILED;
+    }
+    std::vector<Point2f> scanPoints;
+    bool timedOut = false;
+    if (!scanBitmap(env, srcBitmap, engineType, options_, contextPtr, scanPoints, &timedOut)) {
+        return SCAN_FAILED;
+    }
+    writeQuad(env, roundQuad(scanPoints), outQuad_);
+    return timedOut ? SCAN_TIMED_OUT : SCAN_COMPLETED;
+}
+
+// 输出亚像素坐标，ScanOptions.refine 为 true 时为原图上细化后的结果
+static jint native_scanIntoF(JNIEnv *env, jclass type, jobject srcBitmap, jfloatArray outQuad_, jint engineType,
+                             jobject options_, jlong contextPtr) {
+    if (env -> GetArrayLength(outQuad_) < 8) {
+        return SCAN_FAILED;
+    }
+    std::vector<Point2f> scanPoints;
+    bool timedOut = false;
+    if (!scanBitmap(env, srcBitmap, engineType, options_, contextPtr, scanPoints, &timedOut)) {
+        return SCAN_FAILED;
+    }
+    writeQuad(env, scanPoints, outQuad_);
+    return timedOut ? SCAN_TIMED_OUT : SCAN_COMPLETED;
+}
+
+// 在原图上细化四边形，搜索半径按 500px 扫描的误差估算，图片无法锁定时返回 false 且不修改 points
+static bool refineOnBitmap(JNIEnv *env, jobject srcBitmap, std::vector<Point2f> &points) {
+    LockedBitmap src(env, srcBitmap);
+    if (!src.isLocked()) {
+        return false;
+    }
+    // 只采样边缘附近的像素，直接读取锁定的像素，不做整图颜色转换
+    Mat image = src.image();
+    float resizeScale = std::max(1.0f, 1.0f * std::max(image.cols, image.rows) / scanner::Scanner::DEFAULT_RESIZE_THRESHOLD);
+    points = scanner::QuadRefiner::refine(image, points, scanner::QuadRefiner::searchRadiusForScale(resizeScale));
+    return true;
+}
+
+// 在原图上细化调用方给出的四边形（如 HED 扫描结果），顺序为 左上，右上，右下，左下，搜索半径按 500px 扫描的误差估算
+static void native_refine(JNIEnv *env, jclass type, jobject srcBitmap, jfloatArray quad_, jfloatArray outQuad_) {
+    if (env -> GetArrayLength(quad_) < 8 || env -> GetArrayLength(outQuad_) < 8) {
+        return;
+    }
+    jfloat quad[8];
+    env -> GetFloatArrayRegion(quad_, 0, 8, quad);
+    std::vector<Point2f> points;
+    for (int i = 0; i < 4; i++) {
+        points.push_back(Point2f(quad[i * 2], quad[i * 2 + 1]));
+    }
+    if (!refineOnBitmap(env, srcBitmap, points)) {
+        return;
+    }
+    writeQuad(env, points, outQuad_);
 }
 
-static jobject createJavaPoint(JNIEnv *env, Point point_) {
-    return env -> NewObject(gPointInfo.jClassPoint, gPointInfo.jMethodInit, point_.x, point_.y);
+// 将未旋转图像中的点映射到顺时针旋转 rotation 度后的坐标
+static Point rotatePoint(const Point &point, int width, int height, int rotation) {
+    switch (rotation) {
+        case 90:
+            return Point(height - point.y, point.x);
+        case 180:
+            return Point(width - point.x, height - point.y);
+        case 270:
+            return Point(point.y, width - point.x);
+        default:
+            return point;
+    }
 }
 
-static void native_scan(JNIEnv *env, jclass type, jobject srcBitmap, jobjectArray outPoint_, jboolean canny) {
-    if (env -> GetArrayLength(outPoint_) != 4) {
+// 顺时针旋转 rotation 度后，左上，右上，右下，左下的顺序循环移动 rotation / 90 位，无需重新排序
+static void rotateQuad(std::vector<Point2f> &quad, int width, int height, int rotation) {
+    if (rotation == 0 || quad.size() != 4) {
         return;
     }
-    Mat srcBitmapMat;
-    bitmap_to_mat(env, srcBitmap, srcBitmapMat);
-    Mat bgrData(srcBitmapMat.rows, srcBitmapMat.cols, CV_8UC3);
-    cvtColor(srcBitmapMat, bgrData, COLOR_RGBA2BGR);
-    scanner::Scanner docScanner(bgrData, canny);
+    int shift = rotation / 90;
+    std::vector<Point2f> rotated(4);
+    for (int i = 0; i < 4; i++) {
+        Point2f point = quad[(i + 4 - shift) % 4];
+        switch (rotation) {
+            case 90:
+                rotated[i] = Point2f(height - point.y, point.x);
+                break;
+            case 180:
+                rotated[i] = Point2f(width - point.x, height - point.y);
+                break;
+            default:
+                rotated[i] = Point2f(point.y, width - point.x);
+                break;
+        }
+    }
+    quad = rotated;
+}
+
+// 以 direct ByteBuffer 中的 Y 平面构造单通道 Mat，不拷贝数据
+static bool toLumaMat(JNIEnv *env, jobject yBuffer, jint rowStride, jint width, jint height, Mat &lumaMat) {
+    uchar *yData = static_cast<uchar *>(env -> GetDirectBufferAddress(yBuffer));
+    jlong capacity = env -> GetDirectBufferCapacity(yBuffer);
+    if (yData == NULL || capacity < (jlong) rowStride * (height - 1) + width) {
+        throwJavaException(env, "yBuffer must be a direct buffer holding rowStride * height bytes");
+        return false;
+    }
+    lumaMat = Mat(height, width, CV_8UC1, yData, static_cast<size_t>(rowStride));
+    return true;
+}
+
+// 把图片缩放到模型输入尺寸，按 RGB 顺序写入 direct ByteBuffer：floatInput 为 false 时每通道 1 字节（uint8 模型），
+// 否则为 float32，取值仍为 0-255；缩放与 Bitmap.createScaledBitmap(filter = false) 一样取最近邻
+static jboolean native_fillModelInput(JNIEnv *env, jclass type, jobject srcBitmap, jint size, jboolean floatInput,
+                                      jobject buffer) {
+    void *address = env -> GetDirectBufferAddress(buffer);
+    jlong capacity = env -> GetDirectBufferCapacity(buffer);
+    int elemSize = floatInput ? sizeof(float) : sizeof(uchar);
+    if (address == NULL || capacity < (jlong) size * size * 3 * elemSize) {
+        return JNI_FALSE;
+    }
+    LockedBitmap src(env, srcBitmap);
+    if (!src.isLocked()) {
+        return JNI_FALSE;
+    }
+    Mat resized;
+    resize(src.rgba(), resized, Size(size, size), 0, 0, INTER_NEAREST);
+    if (!floatInput) {
+        Mat input(size, size, CV_8UC3, address);
+        cvtColor(resized, input, COLOR_RGBA2RGB);
+    } else {
+        Mat rgb;
+        cvtColor(resized, rgb, COLOR_RGBA2RGB);
+        Mat input(size, size, CV_32FC3, address);
+        rgb.convertTo(input, CV_32F);
+    }
+    return JNI_TRUE;
+}
+
+// 把模型输出（float32 或 uint8 概率）转换为 8 位掩码写入 outMask，整块向量化处理：
+// soft 为 false 时概率大于 threshold 为 255，其余为 0；soft 为 true 时输出概率 * 255
+static jboolean native_decodeModelOutput(JNIEnv *env, jclass type, jobject output, jint size, jboolean quantized,
+                                         jfloat threshold, jboolean soft, jobject outMask) {
+    void *outputAddress = env -> GetDirectBufferAddress(output);
+    void *maskAddress = env -> GetDirectBufferAddress(outMask);
+    int elemSize = quantized ? sizeof(uchar) : sizeof(float);
+    if (outputAddress == NULL || env -> GetDirectBufferCapacity(output) < (jlong) size * size * elemSize
+            || maskAddress == NULL || env -> GetDirectBufferCapacity(outMask) < (jlong) size * size) {
+        return JNI_FALSE;
+    }
+    Mat outputMat(size, size, quantized ? CV_8UC1 : CV_32FC1, outputAddress);
+    Mat maskMat(size, size, CV_8UC1, maskAddress);
+    if (soft) {
+        outputMat.convertTo(maskMat, CV_8U, quantized ? 1 : 255);
+    } else {
+        compare(outputMat, quantized ? threshold * 255 : threshold, maskMat, CMP_GT);
+    }
+    return JNI_TRUE;
+}
+
+// 在模型分辨率的 HED 边缘掩码上扫描，顶点按 srcWidth / width、srcHeight / height 换算回原图坐标，
+// 不再把掩码放大到原图尺寸；掩码只经过缩放，直线仍为直线，四边形顶点可以直接换算
+// maskThreshold 大于 0 时 mask 为边缘概率图，见 scanner::ScanOptions::maskThreshold；
+// ScanOptions.refine 为 true 时在原图 srcBitmap 上细化，结果写入 outQuadF 或 outQuad 之一，返回 ScanStatus
+static jint native_scanMask(JNIEnv *env, jclass type, jobject srcBitmap, jobject mask, jint width, jint height,
+                            jint maskThreshold, jfloatArray outQuadF_, jintArray outQuad_, jobject options_,
+                            jlong contextPtr) {
+    jarray outArray = outQuadF_ != NULL ? static_cast<jarray>(outQuadF_) : static_cast<jarray>(outQuad_);
+    if (outArray == NULL || env -> GetArrayLength(outArray) < 8) {
+        return SCAN_FAILED;
+    }
+    AndroidBitmapInfo srcInfo;
+    if (AndroidBitmap_getInfo(env, srcBitmap, &srcInfo) < 0) {
+        return SCAN_FAILED;
+    }
+    Mat maskMat;
+    if (!toLumaMat(env, mask, width, width, height, maskMat)) {
+        return SCAN_FAILED;
+    }
+    scanner::ScanOptions options = toScanOptions(env, options_);
+    options.engine = scanner::ENGINE_CONTOUR;
+    options.maskThreshold = maskThreshold;
+    scanner::Scanner localScanner;
+    scanner::Scanner &docScanner = contextPtr != 0 ? *toScanContext(contextPtr) : localScanner;
+    docScanner.reset(maskMat, false, options);
+    std::vector<Point2f> scanPoints = docScanner.scanPointF();
+    if (scanPoints.size() != 4) {
+        return SCAN_FAILED;
+    }
+    float scaleX = (float) srcInfo.width / width;
+    float scaleY = (float) srcInfo.height / height;
+    for (Point2f &point : scanPoints) {
+        point.x *= scaleX;
+        point.y *= scaleY;
+    }
+    bool timedOut = docScanner.isTimedOut();
+    // 边缘掩码上不做细化，改为在原图上细化
+    if (options.refine && !timedOut) {
+        refineOnBitmap(env, srcBitmap, scanPoints);
+    }
+    if (outQuadF_ != NULL) {
+        writeQuad(env, scanPoints, outQuadF_);
+    } else {
+        writeQuad(env, roundQuad(scanPoints), outQuad_);
+    }
+    return timedOut ? SCAN_TIMED_OUT : SCAN_COMPLETED;
+}
+
+// 直接在相机 YUV_420_888 的 Y 平面上扫描，不做颜色转换也不经过 Bitmap，返回是否在时间预算内完成
+static jboolean native_scanYuv(JNIEnv *env, jclass type, jobject yBuffer, jint rowStride, jint width, jint height,
+                               jint rotation, jintArray outQuad_, jobject options_, jlong contextPtr) {
+    if (env -> GetArrayLength(outQuad_) < 8) {
+        return JNI_FALSE;
+    }
+    Mat lumaMat;
+    if (!toLumaMat(env, yBuffer, rowStride, width, height, lumaMat)) {
+        return JNI_FALSE;
+    }
+    scanner::Scanner localScanner;
+    scanner::Scanner &docScanner = contextPtr != 0 ? *toScanContext(contextPtr) : localScanner;
+    docScanner.reset(lumaMat, true, toScanOptions(env, options_));
     std::vector<Point> scanPoints = docScanner.scanPoint();
-    if (scanPoints.size() == 4) {
-        for (int i = 0; i < 4; ++i) {
-            env -> SetObjectArrayElement(outPoint_, i, createJavaPoint(env, scanPoints[i]));
+    if (scanPoints.size() != 4) {
+        return JNI_FALSE;
+    }
+    if (rotation != 0) {
+        for (Point &point : scanPoints) {
+            point = rotatePoint(point, width, height, rotation);
         }
+        // 旋转后重新按左上，右上，右下，左下排序
+        scanPoints = docScanner.sortPointClockwise(scanPoints);
     }
+    writeQuad(env, scanPoints, outQuad_);
+    return docScanner.isTimedOut() ? JNI_FALSE : JNI_TRUE;
 }
 
-static vector<Point> pointsToNative(JNIEnv *env, jobjectArray points_) {
-    int arrayLength = env->GetArrayLength(points_);
-    vector<Point> result;
-    for(int i = 0; i < arrayLength; i++) {
-        jobject point_ = env -> GetObjectArrayElement(points_, i);
-        int pX = env -> GetIntField(point_, gPointInfo.jFieldIDX);
-        int pY = env -> GetIntField(point_, gPointInfo.jFieldIDY);
-        result.push_back(Point(pX, pY));
+// QuadTracker：Java 端持有的 scanner::QuadTracker 指针
+static inline scanner::QuadTracker *toQuadTracker(jlong ptr) {
+    return reinterpret_cast<scanner::QuadTracker *>(ptr);
+}
+
+static jlong native_trackerCreate(JNIEnv *env, jclass type) {
+    return reinterpret_cast<jlong>(new scanner::QuadTracker());
+}
+
+static void native_trackerRelease(JNIEnv *env, jclass type, jlong ptr) {
+    delete toQuadTracker(ptr);
+}
+
+static void native_trackerReset(JNIEnv *env, jclass type, jlong ptr) {
+    toQuadTracker(ptr)->reset();
+}
+
+// 跟踪结果写入 outQuad，返回 QuadTracker::State，丢失时不修改 outQuad
+static jint trackFrame(JNIEnv *env, jlong ptr, Mat &frame, int rotation, jfloatArray outQuad_, jobject options_) {
+    std::vector<Point2f> quad;
+    scanner::QuadTracker::State state = toQuadTracker(ptr)->track(frame, toScanOptions(env, options_), quad);
+    if (state != scanner::QuadTracker::STATE_LOST) {
+        rotateQuad(quad, frame.cols, frame.rows, rotation);
+        writeQuad(env, quad, outQuad_);
     }
-    return result;
+    return state;
 }
 
-static void native_crop(JNIEnv *env, jclass type, jobject srcBitmap, jobjectArray points_, jobject outBitmap) {
-    std::vector<Point> points = pointsToNative(env, points_);
-    if (points.size() != 4) {
-        return;
+static jint native_trackerUpdateYuv(JNIEnv *env, jclass type, jlong ptr, jobject yBuffer, jint rowStride, jint width,
+                                    jint height, jint rotation, jfloatArray outQuad_, jobject options_) {
+    if (env -> GetArrayLength(outQuad_) < 8) {
+        return scanner::QuadTracker::STATE_LOST;
     }
-    Point leftTop = points[0];
-    Point rightTop = points[1];
-    Point rightBottom = points[2];
-    Point leftBottom = points[3];
+    Mat lumaMat;
+    if (!toLumaMat(env, yBuffer, rowStride, width, height, lumaMat)) {
+        return scanner::QuadTracker::STATE_LOST;
+    }
+    return trackFrame(env, ptr, lumaMat, rotation, outQuad_, options_);
+}
 
-    Mat srcBitmapMat;
-    bitmap_to_mat(env, srcBitmap, srcBitmapMat);
+static jint native_trackerUpdate(JNIEnv *env, jclass type, jlong ptr, jobject srcBitmap, jfloatArray outQuad_,
+                                 jobject options_) {
+    if (env -> GetArrayLength(outQuad_) < 8) {
+        return scanner::QuadTracker::STATE_LOST;
+    }
+    LockedBitmap src(env, srcBitmap);
+    if (!src.isLocked()) {
+        return scanner::QuadTracker::STATE_LOST;
+    }
+    Mat frame = src.image();
+    return trackFrame(env, ptr, frame, 0, outQuad_, options_);
+}
 
-    AndroidBitmapInfo outBitmapInfo;
-    AndroidBitmap_getInfo(env, outBitmap, &outBitmapInfo);
-    Mat dstBitmapMat;
-    int newHeight = outBitmapInfo.height;
-    int newWidth = outBitmapInfo.width;
-    dstBitmapMat = Mat::zeros(newHeight, newWidth, srcBitmapMat.type());
+// points 顺序为 左上，右上，右下，左下
+static void cropBitmap(JNIEnv *env, jobject srcBitmap, const Point2f *points, jobject outBitmap) {
+    Point2f leftTop = points[0];
+    Point2f rightTop = points[1];
+    Point2f rightBottom = points[2];
+    Point2f leftBottom = points[3];
 
-    std::vector<Point2f> srcTriangle;
-    std::vector<Point2f> dstTriangle;
+    LockedBitmap src(env, srcBitmap);
+    if (!src.isLocked()) {
+        return;
+    }
+    Mat srcBitmapMat = src.image();
 
-    srcTriangle.push_back(Point2f(leftTop.x, leftTop.y));
-    srcTriangle.push_back(Point2f(rightTop.x, rightTop.y));
-    srcTriangle.push_back(Point2f(leftBottom.x, leftBottom.y));
-    srcTriangle.push_back(Point2f(rightBottom.x, rightBottom.y));
+    LockedBitmap dst(env, outBitmap);
+    if (!dst.isLocked()) {
+        return;
+    }
+    int newHeight = dst.height();
+    int newWidth = dst.width();
 
-    dstTriangle.push_back(Point2f(0, 0));
-    dstTriangle.push_back(Point2f(newWidth, 0));
-    dstTriangle.push_back(Point2f(0, newHeight));
-    dstTriangle.push_back(Point2f(newWidth, newHeight));
+    Point2f srcTriangle[4] = {leftTop, rightTop, leftBottom, rightBottom};
+    Point2f dstTriangle[4] = {
+            Point2f(0, 0),
+            Point2f(newWidth, 0),
+            Point2f(0, newHeight),
+            Point2f(newWidth, newHeight)
+    };
 
     Mat transform = getPerspectiveTransform(srcTriangle, dstTriangle);
-    warpPerspective(srcBitmapMat, dstBitmapMat, transform, dstBitmapMat.size());
+    if (dst.mat().type() == srcBitmapMat.type()) {
+        // 透视变换结果直接写入目标 Bitmap 的像素
+        warpPerspective(srcBitmapMat, dst.mat(), transform, dst.mat().size());
+    } else {
+        Mat dstBitmapMat;
+        warpPerspective(srcBitmapMat, dstBitmapMat, transform, Size(newWidth, newHeight));
+        dst.write(dstBitmapMat);
+    }
+}
+
+static void native_crop(JNIEnv *env, jclass type, jobject srcBitmap, jobjectArray points_, jobject outBitmap) {
+    if (env -> GetArrayLength(points_) != 4) {
+        return;
+    }
+    Point2f points[4];
+    for (int i = 0; i < 4; i++) {
+        jobject point_ = env -> GetObjectArrayElement(points_, i);
+        points[i].x = env -> GetIntField(point_, gPointInfo.jFieldIDX);
+        points[i].y = env -> GetIntField(point_, gPointInfo.jFieldIDY);
+        env -> DeleteLocalRef(point_);
+    }
+    cropBitmap(env, srcBitmap, points, outBitmap);
+}
+
+// 纠正4个点的位置，将距离(0,0)最近的点作为第一个点
+static void rotateToOrigin(Point2f *points) {
+    int index = 0;
+    double minDistance = -1;
+    for (int i = 0; i < 4; i++) {
+        double distance = (double) points[i].x * points[i].x + (double) points[i].y * points[i].y;
+        if (minDistance < 0 || distance < minDistance) {
+            minDistance = distance;
+            index = i;
+        }
+    }
+    std::rotate(points, points + index, points + 4);
+}
+
+static void native_cropQuad(JNIEnv *env, jclass type, jobject srcBitmap, jintArray quad_, jobject outBitmap) {
+    if (env -> GetArrayLength(quad_) < 8) {
+        return;
+    }
+    jint quad[8];
+    env -> GetIntArrayRegion(quad_, 0, 8, quad);
+    Point2f points[4];
+    for (int i = 0; i < 4; i++) {
+        points[i] = Point2f(quad[i * 2], quad[i * 2 + 1]);
+    }
+    rotateToOrigin(points);
+    cropBitmap(env, srcBitmap, points, outBitmap);
+}
 
-    mat_to_bitmap(env, dstBitmapMat, outBitmap);
+// 使用亚像素顶点裁剪，如 scanInto(Bitmap, float[], ScanOptions) 细化后的结果
+static void native_cropQuadF(JNIEnv *env, jclass type, jobject srcBitmap, jfloatArray quad_, jobject outBitmap) {
+    if (env -> GetArrayLength(quad_) < 8) {
+        return;
+    }
+    jfloat quad[8];
+    env -> GetFloatArrayRegion(quad_, 0, 8, quad);
+    Point2f points[4];
+    for (int i = 0; i < 4; i++) {
+        points[i] = Point2f(quad[i * 2], quad[i * 2 + 1]);
+    }
+    rotateToOrigin(points);
+    cropBitmap(env, srcBitmap, points, outBitmap);
 }
 
 static jdouble native_calculateSSIM(JNIEnv *env, jclass type, jobject bitmap1, jobject bitmap2) {
-    Mat mat1, mat2;
-    bitmap_to_mat(env, bitmap1, mat1);
-    bitmap_to_mat(env, bitmap2, mat2);
+    LockedBitmap src1(env, bitmap1);
+    LockedBitmap src2(env, bitmap2);
+    if (!src1.isLocked() || !src2.isLocked()) {
+        return 0.0;
+    }
     
-    double ssimValue = ssim::SSIMCalculator::calculateSSIM(mat1, mat2);
+    double ssimValue = ssim::SSIMCalculator::calculateSSIM(src1.image(), src2.image());
     return static_cast<jdouble>(ssimValue);
 }
 
-// 创建新的Bitmap对象的辅助函数
-static jobject createBitmapFromMat(JNIEnv *env, Mat &srcMat) {
-    // 获取Bitmap类和创建方法
-    jclass bitmapClass = env->FindClass("android/graphics/Bitmap");
-    jclass bitmapConfigClass = env->FindClass("android/graphics/Bitmap$Config");
-    
-    jfieldID argb8888FieldID = env->GetStaticFieldID(bitmapConfigClass, "ARGB_8888", "Landroid/graphics/Bitmap$Config;");
-    jobject argb8888Obj = env->GetStaticObjectField(bitmapConfigClass, argb8888FieldID);
-    
-    jmethodID createBitmapMethodID = env->GetStaticMethodID(bitmapClass, "createBitmap", "(IILandroid/graphics/Bitmap$Config;)Landroid/graphics/Bitmap;");
-    
-    // 创建新的Bitmap
-    jobject newBitmap = env->CallStaticObjectMethod(bitmapClass, createBitmapMethodID, srcMat.cols, srcMat.rows, argb8888Obj);
-    
-    // 将Mat数据复制到Bitmap
-    mat_to_bitmap(env, srcMat, newBitmap);
-    
-    return newBitmap;
+// 执行处理步骤并写入调用方提供的 Bitmap，类型一致时结果直接写入其像素内存
+static void native_processInto(JNIEnv *env, jclass type, jobject srcBitmap, jobject outBitmap, jint op, jint arg) {
+    try {
+        if (env -> IsSameObject(srcBitmap, outBitmap)) {
+            // 原地处理：结果先写入临时缓冲
+            LockedBitmap bitmap(env, srcBitmap);
+            if (!bitmap.isLocked()) {
+                return;
+            }
+            Mat dstMat;
+            processor::DocumentProcessor::apply(bitmap.image(), dstMat, op, arg);
+            bitmap.write(dstMat);
+            return;
+        }
+        LockedBitmap src(env, srcBitmap);
+        if (!src.isLocked()) {
+            return;
+        }
+        LockedBitmap dst(env, outBitmap);
+        if (!dst.isLocked()) {
+            return;
+        }
+        Mat dstMat = dst.mat();
+        processor::DocumentProcessor::apply(src.image(), dstMat, op, arg);
+        dst.write(dstMat);
+    } catch (cv::Exception &e) {
+        throwJavaException(env, e.what());
+    }
 }
 
-static jobject native_convertToGrayscale(JNIEnv *env, jclass type, jobject srcBitmap) {
-    Mat srcMat;
-    bitmap_to_mat(env, srcBitmap, srcMat);
-    
-    Mat grayMat;
-    if (srcMat.channels() == 4) {
-        cvtColor(srcMat, grayMat, COLOR_RGBA2GRAY);
-    } else if (srcMat.channels() == 3) {
-        cvtColor(srcMat, grayMat, COLOR_RGB2GRAY);
-    } else {
-        grayMat = srcMat.clone();
+// NativeImage：Java 端持有的 cv::Mat 指针，处理步骤之间不经过 Bitmap
+static inline Mat *toNativeImage(jlong ptr) {
+    return reinterpret_cast<Mat *>(ptr);
+}
+
+static jlong native_imageFromBitmap(JNIEnv *env, jclass type, jobject srcBitmap) {
+    LockedBitmap src(env, srcBitmap);
+    if (!src.isLocked()) {
+        return 0;
     }
-    
-    // 转换回RGBA格式以便显示
-    Mat rgbaMat;
-    cvtColor(grayMat, rgbaMat, COLOR_GRAY2RGBA);
-    
-    return createBitmapFromMat(env, rgbaMat);
+    Mat *image = new Mat();
+    src.image().copyTo(*image);
+    return reinterpret_cast<jlong>(image);
 }
 
-static jobject native_denoiseImage(JNIEnv *env, jclass type, jobject srcBitmap) {
-    Mat srcMat;
-    bitmap_to_mat(env, srcBitmap, srcMat);
-    
-    Mat denoisedMat;
-    // 使用高斯滤波进行降噪
-    GaussianBlur(srcMat, denoisedMat, Size(5, 5), 0);
-    
-    return createBitmapFromMat(env, denoisedMat);
+static void native_imageRelease(JNIEnv *env, jclass type, jlong ptr) {
+    delete toNativeImage(ptr);
 }
 
-static jobject native_enhanceContrast(JNIEnv *env, jclass type, jobject srcBitmap) {
-    Mat srcMat;
-    bitmap_to_mat(env, srcBitmap, srcMat);
-    
-    Mat enhancedMat;
-    // 使用CLAHE（对比度限制自适应直方图均衡化）增强对比度
-    if (srcMat.channels() == 1) {
-        Ptr<CLAHE> clahe = createCLAHE(3.0, Size(8, 8));
-        clahe->apply(srcMat, enhancedMat);
-        // 转换回RGBA格式
-        Mat rgbaMat;
-        cvtColor(enhancedMat, rgbaMat, COLOR_GRAY2RGBA);
-        enhancedMat = rgbaMat;
-    } else {
-        // 对于彩色图像，转换到Lab色彩空间处理
-        Mat labMat;
-        cvtColor(srcMat, labMat, COLOR_RGBA2RGB);
-        cvtColor(labMat, labMat, COLOR_RGB2Lab);
-        
-        std::vector<Mat> labChannels;
-        split(labMat, labChannels);
-        
-        Ptr<CLAHE> clahe = createCLAHE(3.0, Size(8, 8));
-        clahe->apply(labChannels[0], labChannels[0]);
-        
-        merge(labChannels, labMat);
-        cvtColor(labMat, enhancedMat, COLOR_Lab2RGB);
-        cvtColor(enhancedMat, enhancedMat, COLOR_RGB2RGBA);
+static void native_imageInfo(JNIEnv *env, jclass type, jlong ptr, jintArray outInfo_) {
+    Mat *image = toNativeImage(ptr);
+    jint info[3] = {image->cols, image->rows, image->channels()};
+    env -> SetIntArrayRegion(outInfo_, 0, 3, info);
+}
+
+static void native_imageCopyToBitmap(JNIEnv *env, jclass type, jlong ptr, jobject outBitmap) {
+    LockedBitmap dst(env, outBitmap);
+    if (!dst.isLocked()) {
+        return;
     }
-    
-    return createBitmapFromMat(env, enhancedMat);
+    dst.write(*toNativeImage(ptr));
 }
 
-static jobject native_binarizeImage(JNIEnv *env, jclass type, jobject srcBitmap) {
-    Mat srcMat;
-    bitmap_to_mat(env, srcBitmap, srcMat);
-    
-    Mat grayMat;
-    if (srcMat.channels() > 1) {
-        cvtColor(srcMat, grayMat, COLOR_RGBA2GRAY);
-    } else {
-        grayMat = srcMat.clone();
+// 按行紧凑拷贝像素（单通道时即 width * height 字节）
+static void copyPacked(const Mat &image, uchar *dst) {
+    size_t rowBytes = image.cols * image.elemSize();
+    for (int row = 0; row < image.rows; row++) {
+        memcpy(dst + row * rowBytes, image.ptr(row), rowBytes);
     }
-    
-    Mat binaryMat;
-    // 使用自适应阈值二值化
-    adaptiveThreshold(grayMat, binaryMat, 255, ADAPTIVE_THRESH_GAUSSIAN_C, THRESH_BINARY, 11, 2);
-    
-    // 转换回RGBA格式
-    Mat rgbaMat;
-    cvtColor(binaryMat, rgbaMat, COLOR_GRAY2RGBA);
-    
-    return createBitmapFromMat(env, rgbaMat);
 }
 
-// 高级文档处理：包含形态学操作和背景分离
-static jobject native_advancedDocumentProcess(JNIEnv *env, jclass type, jobject srcBitmap) {
-    Mat srcMat;
-    bitmap_to_mat(env, srcBitmap, srcMat);
-    
-    // 转换为BGR格式进行处理
-    Mat bgrMat;
-    if (srcMat.channels() == 4) {
-        cvtColor(srcMat, bgrMat, COLOR_RGBA2BGR);
-    } else {
-        bgrMat = srcMat.clone();
+static jbyteArray native_imageToByteArray(JNIEnv *env, jclass type, jlong ptr) {
+    Mat *image = toNativeImage(ptr);
+    jsize size = static_cast<jsize>(image->total() * image->elemSize());
+    jbyteArray result = env -> NewByteArray(size);
+    if (result == NULL) {
+        return NULL;
     }
-    
-    // 步骤1：形态学操作去除文本内容
-    Mat morphMat;
-    Mat kernel = getStructuringElement(MORPH_RECT, Size(5, 5));
-    morphologyEx(bgrMat, morphMat, MORPH_CLOSE, kernel, Point(-1, -1), 3);
-    
-    // 步骤2：GrabCut背景分离
-    Mat mask = Mat::zeros(morphMat.rows, morphMat.cols, CV_8UC1);
-    Mat bgdModel, fgdModel;
-    
-    // 定义前景区域（留20像素边界）
-    Rect rect(20, 20, morphMat.cols - 40, morphMat.rows - 40);
-    
-    // 执行GrabCut算法
-    grabCut(morphMat, mask, rect, bgdModel, fgdModel, 5, GC_INIT_WITH_RECT);
-    
-    // 创建前景mask
-    Mat mask2;
-    compare(mask, GC_PR_FGD, mask2, CMP_EQ);
-    Mat mask3;
-    compare(mask, GC_FGD, mask3, CMP_EQ);
-    Mat finalMask = mask2 | mask3;
-    
-    // 应用mask到原图
-    Mat result;
-    morphMat.copyTo(result, finalMask);
-    
-    // 转换回RGBA格式
-    Mat rgbaMat;
-    cvtColor(result, rgbaMat, COLOR_BGR2RGBA);
-    
-    return createBitmapFromMat(env, rgbaMat);
+    jbyte *bytes = env -> GetByteArrayElements(result, NULL);
+    copyPacked(*image, reinterpret_cast<uchar *>(bytes));
+    env -> ReleaseByteArrayElements(result, bytes, 0);
+    return result;
 }
 
-// 智能二值化：多种方法结合
-static jobject native_smartBinarize(JNIEnv *env, jclass type, jobject srcBitmap, jint method) {
-    Mat srcMat;
-    bitmap_to_mat(env, srcBitmap, srcMat);
-    
-    Mat grayMat;
-    if (srcMat.channels() > 1) {
-        cvtColor(srcMat, grayMat, COLOR_RGBA2GRAY);
-    } else {
-        grayMat = srcMat.clone();
+static jboolean native_imageCopyToBuffer(JNIEnv *env, jclass type, jlong ptr, jobject buffer) {
+    Mat *image = toNativeImage(ptr);
+    void *address = env -> GetDirectBufferAddress(buffer);
+    jlong capacity = env -> GetDirectBufferCapacity(buffer);
+    if (address == NULL || capacity < (jlong) (image->total() * image->elemSize())) {
+        return JNI_FALSE;
     }
-    
-    Mat binaryMat;
-    
-    switch (method) {
-        case 0: // 自适应高斯阈值
-            adaptiveThreshold(grayMat, binaryMat, 255, ADAPTIVE_THRESH_GAUSSIAN_C, THRESH_BINARY, 11, 2);
-            break;
-        case 1: // 自适应均值阈值
-            adaptiveThreshold(grayMat, binaryMat, 255, ADAPTIVE_THRESH_MEAN_C, THRESH_BINARY, 15, 7);
-            break;
-        case 2: // Otsu自动阈值
-            threshold(grayMat, binaryMat, 0, 255, THRESH_BINARY + THRESH_OTSU);
-            break;
-        case 3: // 组合方法：先CLAHE再自适应阈值
-            {
-                Mat enhancedMat;
-                Ptr<CLAHE> clahe = createCLAHE(3.0, Size(8, 8));
-                clahe->apply(grayMat, enhancedMat);
-                adaptiveThreshold(enhancedMat, binaryMat, 255, ADAPTIVE_THRESH_GAUSSIAN_C, THRESH_BINARY, 11, 2);
-            }
-            break;
-        default:
-            adaptiveThreshold(grayMat, binaryMat, 255, ADAPTIVE_THRESH_GAUSSIAN_C, THRESH_BINARY, 11, 2);
-            break;
+    copyPacked(*image, static_cast<uchar *>(address));
+    return JNI_TRUE;
+}
+
+static jlong native_imageProcess(JNIEnv *env, jclass type, jlong ptr, jint op, jint arg) {
+    Mat *image = new Mat();
+    try {
+        *image = processor::DocumentProcessor::apply(*toNativeImage(ptr), op, arg);
+    } catch (cv::Exception &e) {
+        delete image;
+        throwJavaException(env, e.what());
+        return 0;
     }
-    
-    // 转换回RGBA格式
-    Mat rgbaMat;
-    cvtColor(binaryMat, rgbaMat, COLOR_GRAY2RGBA);
-    
-    return createBitmapFromMat(env, rgbaMat);
+    return reinterpret_cast<jlong>(image);
 }
 
-// 高级降噪：Non-local Means Denoising
-static jobject native_advancedDenoise(JNIEnv *env, jclass type, jobject srcBitmap) {
-    Mat srcMat;
-    bitmap_to_mat(env, srcBitmap, srcMat);
-    
-    Mat denoisedMat;
-    
-    if (srcMat.channels() == 1) {
-        // 灰度图像降噪
-        fastNlMeansDenoising(srcMat, denoisedMat, 3, 7, 21);
-    } else {
-        // 彩色图像降噪
-        Mat bgrMat;
-        cvtColor(srcMat, bgrMat, COLOR_RGBA2BGR);
-        fastNlMeansDenoisingColored(bgrMat, denoisedMat, 3, 3, 7, 21);
-        cvtColor(denoisedMat, denoisedMat, COLOR_BGR2RGBA);
+// contextPtr 为 0 时使用临时的 Scanner，RGBA 与单通道图像都直接扫描，不做整图颜色转换
+static bool scanImage(JNIEnv *env, jlong ptr, jobject options_, jlong contextPtr, std::vector<Point2f> &scanPoints,
+                      bool *timedOut = NULL) {
+    Mat *image = toNativeImage(ptr);
+    scanner::Scanner localScanner;
+    scanner::Scanner &docScanner = contextPtr != 0 ? *toScanContext(contextPtr) : localScanner;
+    docScanner.reset(*image, true, toScanOptions(env, options_));
+    scanPoints = docScanner.scanPointF();
+    if (timedOut != NULL) {
+        *timedOut = docScanner.isTimedOut();
+    }
+    return scanPoints.size() == 4;
+}
+
+static jboolean native_imageScan(JNIEnv *env, jclass type, jlong ptr, jintArray outQuad_, jobject options_) {
+    if (env -> GetArrayLength(outQuad_) < 8) {
+        return JNI_FALSE;
+    }
+    std::vector<Point2f> scanPoints;
+    if (!scanImage(env, ptr, options_, 0, scanPoints)) {
+        return JNI_FALSE;
+    }
+    writeQuad(env, roundQuad(scanPoints), outQuad_);
+    return JNI_TRUE;
+}
+
+// 输出亚像素坐标，返回 ScanStatus，用于批量扫描时复用 ScanContext
+static jint native_imageScanIntoF(JNIEnv *env, jclass type, jlong ptr, jfloatArray outQuad_, jobject options_,
+                                  jlong contextPtr) {
+    if (env -> GetArrayLength(outQuad_) < 8) {
+        return SCAN_FAILED;
+    }
+    std::vector<Point2f> scanPoints;
+    bool timedOut = false;
+    if (!scanImage(env, ptr, options_, contextPtr, scanPoints, &timedOut)) {
+        return SCAN_FAILED;
+    }
+    writeQuad(env, scanPoints, outQuad_);
+    return timedOut ? SCAN_TIMED_OUT : SCAN_COMPLETED;
+}
+
+// 设置 OpenCV 并行计算（parallel_for_）使用的线程数，返回原来的线程数
+static jint native_setNumThreads(JNIEnv *env, jclass type, jint numThreads) {
+    int oldNumThreads = getNumThreads();
+    setNumThreads(numThreads);
+    return oldNumThreads;
+}
+
+// 以只读方式映射整个输入文件后直接解码，不经过 Java 层缓冲
+class MappedFile {
+public:
+    MappedFile(int fd) : data(MAP_FAILED), size(0) {
+        struct stat st;
+        if (fd >= 0 && fstat(fd, &st) == 0 && st.st_size > 0) {
+            size = static_cast<size_t>(st.st_size);
+            data = mmap(NULL, size, PROT_READ, MAP_PRIVATE, fd, 0);
+        }
+    }
+    ~MappedFile() {
+        if (data != MAP_FAILED) {
+            munmap(data, size);
+        }
+    }
+    bool isMapped() const { return data != MAP_FAILED; }
+    const uchar *bytes() const { return static_cast<const uchar *>(data); }
+    size_t length() const { return size; }
+private:
+    void *data;
+    size_t size;
+    MappedFile(const MappedFile &) = delete;
+    MappedFile &operator=(const MappedFile &) = delete;
+};
+
+// 解码 JPEG 文件，reduceFactor 为 2/4/8 时在 DCT 阶段直接按比例缩小，不生成原尺寸的中间图像
+// 不是 JPEG 时返回 0，由 Java 层改用 BitmapFactory 解码
+static jlong native_decode(JNIEnv *env, jclass type, jstring path_, jint reduceFactor, jint maxDim, jboolean grayscale) {
+    const char *path = env -> GetStringUTFChars(path_, NULL);
+    int fd = open(path, O_RDONLY | O_CLOEXEC);
+    env -> ReleaseStringUTFChars(path_, path);
+    if (fd < 0) {
+        return 0;
+    }
+    // 映射建立后即可关闭文件描述符
+    MappedFile input(fd);
+    close(fd);
+    if (!input.isMapped()) {
+        return 0;
+    }
+    // 与 BitmapFactory 一致，不按 EXIF 方向旋转，保证顶点坐标可以直接对应原图
+    Mat decoded;
+    if (!codec::JpegCodec::decode(input.bytes(), input.length(), reduceFactor,
+                                  grayscale ? codec::FORMAT_GRAY : codec::FORMAT_RGBA, decoded)) {
+        return 0;
+    }
+
+    // DCT 缩放只支持 1/2、1/4、1/8，剩余部分用 INTER_AREA 缩小到 maxDim
+    try {
+        int maxSize = std::max(decoded.cols, decoded.rows);
+        if (maxDim > 0 && maxSize > maxDim) {
+            double scale = 1.0 * maxDim / maxSize;
+            Size size(std::max(1, cvRound(decoded.cols * scale)), std::max(1, cvRound(decoded.rows * scale)));
+            resize(decoded, decoded, size, 0, 0, INTER_AREA);
+        }
+    } catch (cv::Exception &e) {
+        throwJavaException(env, e.what());
+        return 0;
+    }
+    return reinterpret_cast<jlong>(new Mat(decoded));
+}
+
+static int toFd(JNIEnv *env, jobject fd_) {
+    return env -> GetIntField(fd_, gFileDescriptorInfo.jFieldIDDescriptor);
+}
+
+static jboolean native_encodeJpeg(JNIEnv *env, jclass type, jobject srcBitmap, jobject fd_, jint quality,
+                                  jint chromaQuality, jint chromaSubsampling, jboolean progressive, jboolean optimize,
+                                  jboolean grayscale) {
+    LockedBitmap src(env, srcBitmap);
+    if (!src.isLocked()) {
+        return JNI_FALSE;
+    }
+    return codec::JpegCodec::encode(src.image(), toFd(env, fd_), quality, chromaQuality, chromaSubsampling,
+                                    progressive, optimize, grayscale) ? JNI_TRUE : JNI_FALSE;
+}
+
+static jboolean native_imageEncodeJpeg(JNIEnv *env, jclass type, jlong ptr, jobject fd_, jint quality,
+                                       jint chromaQuality, jint chromaSubsampling, jboolean progressive,
+                                       jboolean optimize, jboolean grayscale) {
+    return codec::JpegCodec::encode(*toNativeImage(ptr), toFd(env, fd_), quality, chromaQuality, chromaSubsampling,
+                                    progressive, optimize, grayscale) ? JNI_TRUE : JNI_FALSE;
+}
+
+enum ProcessTiming {
+    TIMING_DECODE = 0,
+    TIMING_SCAN = 1,
+    TIMING_CROP = 2,
+    TIMING_PROCESS = 3,
+    TIMING_ENCODE = 4,
+    TIMING_COUNT = 5
+};
+
+static inline jlong elapsedMillis(int64 start) {
+    return static_cast<jlong>((getTickCount() - start) * 1000 / getTickFrequency());
+}
+
+// 文件到文件的一次性处理：解码 -> 在缩小的灰度图上扫描 -> 原尺寸透视变换 -> 按模式处理 -> 编码
+// 全部在 native 内存中完成，只返回顶点（原图坐标）、输出尺寸和各阶段耗时
+static jboolean native_processFile(JNIEnv *env, jclass type, jobject inFd_, jobject outFd_, jint scanMaxDim,
+                                   jobject scanOptions_, jint op, jint arg, jint quality, jint chromaQuality,
+                                   jint chromaSubsampling, jboolean progressive, jboolean optimize,
+                                   jboolean grayscale, jintArray outQuad_, jintArray outSize_,
+                                   jlongArray outTimings_) {
+    jlong timings[TIMING_COUNT] = {0};
+    try {
+        // 解码：原图用于裁剪，按 DCT 缩放解码的灰度图用于扫描
+        int64 start = getTickCount();
+        Mat srcMat;
+        Mat scanMat;
+        {
+            MappedFile input(toFd(env, inFd_));
+            if (!input.isMapped()) {
+                return JNI_FALSE;
+            }
+            if (!codec::JpegCodec::decode(input.bytes(), input.length(), 1, codec::FORMAT_RGB, srcMat)) {
+                return JNI_FALSE;
+            }
+            int maxSize = std::max(srcMat.cols, srcMat.rows);
+            int reduceFactor = 1;
+            while (scanMaxDim > 0 && reduceFactor < 8 && maxSize / (reduceFactor * 2) >= scanMaxDim) {
+                reduceFactor *= 2;
+            }
+            if (reduceFactor == 1 || !codec::JpegCodec::decode(input.bytes(), input.length(), reduceFactor,
+                                                               codec::FORMAT_GRAY, scanMat)) {
+                cvtColor(srcMat, scanMat, COLOR_RGB2GRAY);
+            }
+            int scanSize = std::max(scanMat.cols, scanMat.rows);
+            if (scanMaxDim > 0 && scanSize > scanMaxDim) {
+                double scale = 1.0 * scanMaxDim / scanSize;
+                resize(scanMat, scanMat, Size(std::max(1, cvRound(scanMat.cols * scale)),
+                                              std::max(1, cvRound(scanMat.rows * scale))), 0, 0, INTER_AREA);
+            }
+        }
+        timings[TIMING_DECODE] = elapsedMillis(start);
+
+        // 扫描：顶点换算回原图坐标，refine 时先在扫描图上细化，再在原图上以换算后的误差为半径细化
+        start = getTickCount();
+        scanner::ScanOptions scanOptions = toScanOptions(env, scanOptions_);
+        scanner::Scanner docScanner(scanMat, true, scanOptions);
+        std::vector<Point2f> points = docScanner.scanPointF();
+        if (points.size() != 4) {
+            return JNI_FALSE;
+        }
+        float scaleX = 1.0f * srcMat.cols / scanMat.cols;
+        float scaleY = 1.0f * srcMat.rows / scanMat.rows;
+        for (Point2f &point : points) {
+            point.x = std::min<float>(srcMat.cols, point.x * scaleX);
+            point.y = std::min<float>(srcMat.rows, point.y * scaleY);
+        }
+        if (scanOptions.refine) {
+            points = scanner::QuadRefiner::refine(srcMat, points,
+                    scanner::QuadRefiner::searchRadiusForScale(std::max(scaleX, scaleY)));
+        }
+        timings[TIMING_SCAN] = elapsedMillis(start);
+
+        // 裁剪：输出尺寸与 SmartCropper.crop 一致，取对边长度的平均值
+        start = getTickCount();
+        Point2f srcQuad[4] = {points[0], points[1], points[3], points[2]};
+        int cropWidth = static_cast<int>((norm(points[0] - points[1]) + norm(points[3] - points[2])) / 2);
+        int cropHeight = static_cast<int>((norm(points[0] - points[3]) + norm(points[1] - points[2])) / 2);
+        if (cropWidth <= 0 || cropHeight <= 0) {
+            return JNI_FALSE;
+        }
+        Point2f dstQuad[4] = {
+                Point2f(0, 0),
+                Point2f(cropWidth, 0),
+                Point2f(0, cropHeight),
+                Point2f(cropWidth, cropHeight)
+        };
+        Mat cropMat;
+        warpPerspective(srcMat, cropMat, getPerspectiveTransform(srcQuad, dstQuad), Size(cropWidth, cropHeight));
+        srcMat.release();
+        timings[TIMING_CROP] = elapsedMillis(start);
+
+        // 处理：op 小于 0 时直接输出裁剪结果
+        start = getTickCount();
+        Mat resultMat;
+        if (op >= 0) {
+            processor::DocumentProcessor::apply(cropMat, resultMat, op, arg);
+        } else {
+            resultMat = cropMat;
+        }
+        timings[TIMING_PROCESS] = elapsedMillis(start);
+
+        // 编码
+        start = getTickCount();
+        if (!codec::JpegCodec::encode(resultMat, toFd(env, outFd_), quality, chromaQuality, chromaSubsampling,
+                                      progressive, optimize, grayscale)) {
+            return JNI_FALSE;
+        }
+        timings[TIMING_ENCODE] = elapsedMillis(start);
+
+        writeQuad(env, roundQuad(points), outQuad_);
+        jint size[2] = {resultMat.cols, resultMat.rows};
+        env -> SetIntArrayRegion(outSize_, 0, 2, size);
+        env -> SetLongArrayRegion(outTimings_, 0, TIMING_COUNT, timings);
+        return JNI_TRUE;
+    } catch (cv::Exception &e) {
+        throwJavaException(env, e.what());
+        return JNI_FALSE;
     }
-    
-    return createBitmapFromMat(env, denoisedMat);
 }
 
 static JNINativeMethod gMethods[] = {
 
         {
-                "nativeScan",
-                "(Landroid/graphics/Bitmap;[Landroid/graphics/Point;Z)V",
-                (void*)native_scan
+                "nativeScanInto",
+                "(Landroid/graphics/Bitmap;[IILme/pqpo/smartcropperlib/ScanOptions;J)I",
+                (void*)native_scanInto
+        },
+
+        {
+                "nativeScanYuv",
+                "(Ljava/nio/ByteBuffer;IIII[ILme/pqpo/smartcropperlib/ScanOptions;J)Z",
+                (void*)native_scanYuv
         },
 
         {
@@ -339,6 +932,72 @@ static JNINativeMethod gMethods[] = {
                 (void*)native_crop
         },
 
+        {
+                "nativeCropQuad",
+                "(Landroid/graphics/Bitmap;[ILandroid/graphics/Bitmap;)V",
+                (void*)native_cropQuad
+        },
+
+        {
+                "nativeCropQuadF",
+                "(Landroid/graphics/Bitmap;[FLandroid/graphics/Bitmap;)V",
+                (void*)native_cropQuadF
+        },
+
+        {
+                "nativeScanIntoF",
+                "(Landroid/graphics/Bitmap;[FILme/pqpo/smartcropperlib/ScanOptions;J)I",
+                (void*)native_scanIntoF
+        },
+
+        {
+                "nativeScanContextCreate",
+                "()J",
+                (void*)native_scanContextCreate
+        },
+
+        {
+                "nativeScanContextRelease",
+                "(J)V",
+                (void*)native_scanContextRelease
+        },
+
+        {
+                "nativeTrackerCreate",
+                "()J",
+                (void*)native_trackerCreate
+        },
+
+        {
+                "nativeTrackerRelease",
+                "(J)V",
+                (void*)native_trackerRelease
+        },
+
+        {
+                "nativeTrackerReset",
+                "(J)V",
+                (void*)native_trackerReset
+        },
+
+        {
+                "nativeTrackerUpdateYuv",
+                "(JLjava/nio/ByteBuffer;IIII[FLme/pqpo/smartcropperlib/ScanOptions;)I",
+                (void*)native_trackerUpdateYuv
+        },
+
+        {
+                "nativeTrackerUpdate",
+                "(JLandroid/graphics/Bitmap;[FLme/pqpo/smartcropperlib/ScanOptions;)I",
+                (void*)native_trackerUpdate
+        },
+
+        {
+                "nativeRefine",
+                "(Landroid/graphics/Bitmap;[F[F)V",
+                (void*)native_refine
+        },
+
         {
                 "nativeCalculateSSIM",
                 "(Landroid/graphics/Bitmap;Landroid/graphics/Bitmap;)D",
@@ -346,45 +1005,111 @@ static JNINativeMethod gMethods[] = {
         },
 
         {
-                "nativeConvertToGrayscale",
-                "(Landroid/graphics/Bitmap;)Landroid/graphics/Bitmap;",
-                (void*)native_convertToGrayscale
+                "nativeProcessInto",
+                "(Landroid/graphics/Bitmap;Landroid/graphics/Bitmap;II)V",
+                (void*)native_processInto
+        },
+
+        {
+                "nativeImageFromBitmap",
+                "(Landroid/graphics/Bitmap;)J",
+                (void*)native_imageFromBitmap
+        },
+
+        {
+                "nativeImageRelease",
+                "(J)V",
+                (void*)native_imageRelease
+        },
+
+        {
+                "nativeImageInfo",
+                "(J[I)V",
+                (void*)native_imageInfo
+        },
+
+        {
+                "nativeImageCopyToBitmap",
+                "(JLandroid/graphics/Bitmap;)V",
+                (void*)native_imageCopyToBitmap
+        },
+
+        {
+                "nativeImageToByteArray",
+                "(J)[B",
+                (void*)native_imageToByteArray
+        },
+
+        {
+                "nativeImageCopyToBuffer",
+                "(JLjava/nio/ByteBuffer;)Z",
+                (void*)native_imageCopyToBuffer
+        },
+
+        {
+                "nativeImageScan",
+                "(J[ILme/pqpo/smartcropperlib/ScanOptions;)Z",
+                (void*)native_imageScan
+        },
+
+        {
+                "nativeImageScanIntoF",
+                "(J[FLme/pqpo/smartcropperlib/ScanOptions;J)I",
+                (void*)native_imageScanIntoF
+        },
+
+        {
+                "nativeScanMask",
+                "(Landroid/graphics/Bitmap;Ljava/nio/ByteBuffer;III[F[ILme/pqpo/smartcropperlib/ScanOptions;J)I",
+                (void*)native_scanMask
+        },
+
+        {
+                "nativeFillModelInput",
+                "(Landroid/graphics/Bitmap;IZLjava/nio/ByteBuffer;)Z",
+                (void*)native_fillModelInput
+        },
+
+        {
+                "nativeDecodeModelOutput",
+                "(Ljava/nio/ByteBuffer;IZFZLjava/nio/ByteBuffer;)Z",
+                (void*)native_decodeModelOutput
         },
 
         {
-                "nativeDenoiseImage",
-                "(Landroid/graphics/Bitmap;)Landroid/graphics/Bitmap;",
-                (void*)native_denoiseImage
+                "nativeSetNumThreads",
+                "(I)I",
+                (void*)native_setNumThreads
         },
 
         {
-                "nativeEnhanceContrast",
-                "(Landroid/graphics/Bitmap;)Landroid/graphics/Bitmap;",
-                (void*)native_enhanceContrast
+                "nativeDecode",
+                "(Ljava/lang/String;IIZ)J",
+                (void*)native_decode
         },
 
         {
-                "nativeBinarizeImage",
-                "(Landroid/graphics/Bitmap;)Landroid/graphics/Bitmap;",
-                (void*)native_binarizeImage
+                "nativeEncodeJpeg",
+                "(Landroid/graphics/Bitmap;Ljava/io/FileDescriptor;IIIZZZ)Z",
+                (void*)native_encodeJpeg
         },
 
         {
-                "nativeAdvancedDocumentProcess",
-                "(Landroid/graphics/Bitmap;)Landroid/graphics/Bitmap;",
-                (void*)native_advancedDocumentProcess
+                "nativeImageEncodeJpeg",
+                "(JLjava/io/FileDescriptor;IIIZZZ)Z",
+                (void*)native_imageEncodeJpeg
         },
 
         {
-                "nativeSmartBinarize",
-                "(Landroid/graphics/Bitmap;I)Landroid/graphics/Bitmap;",
-                (void*)native_smartBinarize
+                "nativeProcessFile",
+                "(Ljava/io/FileDescriptor;Ljava/io/FileDescriptor;ILme/pqpo/smartcropperlib/ScanOptions;IIIIIZZZ[I[I[J)Z",
+                (void*)native_processFile
         },
 
         {
-                "nativeAdvancedDenoise",
-                "(Landroid/graphics/Bitmap;)Landroid/graphics/Bitmap;",
-                (void*)native_advancedDenoise
+                "nativeImageProcess",
+                "(JII)J",
+                (void*)native_imageProcess
         }
 
 };
@@ -0,0 +1,327 @@
+package me.pqpo.smartcropperlib;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量扫描任务，由 {@link SmartCropper#scanBatch(List, ScanOptions, Executor, Listener)} 等方法创建。
+ * 只向 Executor 提交 parallelism 个工作任务，每个任务持有一个 {@link ScanContext}，扫描完一张再领取下一张，
+ * 待扫描的图片不会堆积在 Executor 的队列中，中间缓冲在整个批次内复用。
+ * 批处理期间 native 并行计算的线程数限制为 CPU 核数 / parallelism，结束后恢复。
+ */
+public final class BatchScan {
+
+    /**
+     * 批量扫描的结果回调，在扫描线程上执行，多张图片的回调可能同时发生
+     */
+    public interface Listener {
+
+        /**
+         * 一张图片扫描完成
+         * @param index 图片在输入列表中的位置
+         * @param quad 原图坐标中的顶点，按 左上，右上，右下，左下 依次为 x, y；图片无法读取或扫描出错时为 null
+         * @param completed 是否在时间预算内完成搜索，quad 为 null 时为 false
+         */
+        void onScanned(int index, float[] quad, boolean completed);
+
+        /**
+         * 所有图片扫描完成，或取消后正在扫描的图片完成
+         * @param result 批次统计
+         */
+        void onFinished(Result result);
+    }
+
+    /**
+     * 批次统计：图片数量、耗时和吞吐量
+     */
+    public static final class Result {
+
+        private final int mCount;
+        private final int mScannedCount;
+        private final int mFailedCount;
+        private final int mTimedOutCount;
+        private final long mElapsedMillis;
+        private final boolean mCancelled;
+
+        Result(int count, int scannedCount, int failedCount, int timedOutCount, long elapsedMillis,
+               boolean cancelled) {
+            mCount = count;
+            mScannedCount = scannedCount;
+            mFailedCount = failedCount;
+            mTimedOutCount = timedOutCount;
+            mElapsedMillis = elapsedMillis;
+            mCancelled = cancelled;
+        }
+
+        /**
+         * @return 输入的图片数量
+         */
+        public int getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return 已扫描的图片数量，包括无法读取的图片，取消时小于 {@link #getCount()}
+         */
+        public int getScannedCount() {
+            return mScannedCount;
+        }
+
+        /**
+         * @return 无法读取或扫描出错的图片数量
+         */
+        public int getFailedCount() {
+            return mFailedCount;
+        }
+
+        /**
+         * @return 超出时间预算提前结束的图片数量
+         */
+        public int getTimedOutCount() {
+            return mTimedOutCount;
+        }
+
+        public long getElapsedMillis() {
+            return mElapsedMillis;
+        }
+
+        /**
+         * @return 吞吐量：每秒扫描的图片数
+         */
+        public double getImagesPerSecond() {
+            return mElapsedMillis > 0 ? mScannedCount * 1000.0 / mElapsedMillis : 0;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public String toString() {
+            return "BatchScan.Result{" + mScannedCount + "/" + mCount
+                    + ", failed=" + mFailedCount
+                    + ", timedOut=" + mTimedOutCount
+                    + ", elapsed=" + mElapsedMillis + "ms"
+                    + ", " + String.format("%.1f", getImagesPerSecond()) + " images/s"
+                    + (mCancelled ? ", cancelled}" : "}");
+        }
+    }
+
+    // native 线程数是进程内全局设置，多个批次同时进行时由最后结束的批次恢复
+    private static final Object sNumThreadsLock = new Object();
+    private static int sActiveBatches = 0;
+    private static int sSavedNumThreads = 0;
+
+    private final List<?> mSources;
+    private final int mMaxDim;
+    private final ScanOptions mOptions;
+    private final Listener mListener;
+    private final int mParallelism;
+    private final int mNativeThreads;
+    private final AtomicInteger mNextIndex = new AtomicInteger();
+    private final AtomicInteger mActiveWorkers = new AtomicInteger();
+    private final AtomicInteger mScannedCount = new AtomicInteger();
+    private final AtomicInteger mFailedCount = new AtomicInteger();
+    private final AtomicInteger mTimedOutCount = new AtomicInteger();
+    private final CountDownLatch mFinishedLatch = new CountDownLatch(1);
+    private volatile boolean mCancelled = false;
+    private volatile Result mResult;
+    private long mStartTime;
+
+    private BatchScan(List<?> sources, int maxDim, ScanOptions options, int parallelism, Listener listener) {
+        mSources = sources;
+        mMaxDim = maxDim;
+        mListener = listener;
+        mParallelism = Math.max(1, Math.min(parallelism, sources.size()));
+        mNativeThreads = Math.max(1, getDefaultParallelism() / mParallelism);
+        mOptions = options != null ? options.copy() : new ScanOptions();
+        if (mNativeThreads == 1) {
+            // 每个核上已有一张图片在扫描，单张图片内不再并行
+            mOptions.parallel = false;
+        }
+    }
+
+    static int getDefaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // sources 中的元素为 Bitmap 或图片路径
+    static BatchScan start(List<?> sources, int maxDim, ScanOptions options, Executor executor, int parallelism,
+                           Listener listener) {
+        if (executor == null || listener == null) {
+            throw new IllegalArgumentException("executor and listener cannot be null");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0");
+        }
+        BatchScan batchScan = new BatchScan(sources, maxDim, options, parallelism, listener);
+        batchScan.start(executor);
+        return batchScan;
+    }
+
+    private void start(Executor executor) {
+        mStartTime = System.nanoTime();
+        if (mSources.isEmpty()) {
+            finish();
+            return;
+        }
+        acquireNativeThreads(mNativeThreads);
+        mActiveWorkers.set(mParallelism);
+        RejectedExecutionException rejected = null;
+        for (int i = 0; i < mParallelism; i++) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runWorker();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected = e;
+                onWorkerFinished();
+            }
+        }
+        if (rejected != null && mActiveWorkers.get() == 0) {
+            // 一个任务都没有提交成功
+            throw rejected;
+        }
+    }
+
+    /**
+     * 取消批次，未开始扫描的图片不再扫描，正在扫描的图片完成后回调 {@link Listener#onFinished(Result)}
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    public boolean isFinished() {
+        return mResult != null;
+    }
+
+    /**
+     * 阻塞等待批次结束，不能在执行扫描的线程上调用
+     * @return 批次统计
+     */
+    public Result await() throws InterruptedException {
+        mFinishedLatch.await();
+        return mResult;
+    }
+
+    private void runWorker() {
+        try (ScanContext context = new ScanContext()) {
+            int index;
+            while (!mCancelled && (index = mNextIndex.getAndIncrement()) < mSources.size()) {
+                scanOne(index, context);
+            }
+        } finally {
+            onWorkerFinished();
+        }
+    }
+
+    private void scanOne(int index, ScanContext context) {
+        float[] quad = new float[8];
+        boolean completed;
+        try {
+            Object source = mSources.get(index);
+            if (source instanceof Bitmap) {
+                completed = SmartCropper.scanInto((Bitmap) source, quad, mOptions, context);
+            } else {
+                completed = scanFile((String) source, quad, context);
+            }
+        } catch (Exception e) {
+            // 无法读取（IOException）、无法扫描（IllegalStateException）或 native 层抛出的异常都计为失败，不计为超时
+            mFailedCount.incrementAndGet();
+            mScannedCount.incrementAndGet();
+            mListener.onScanned(index, null, false);
+            return;
+        }
+        if (!completed) {
+            mTimedOutCount.incrementAndGet();
+        }
+        mScannedCount.incrementAndGet();
+        mListener.onScanned(index, quad, completed);
+    }
+
+    private boolean scanFile(String path, float[] outQuad, ScanContext context) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Cannot decode " + path);
+        }
+        ScanEngine engine = SmartCropper.getScanEngine(mOptions);
+        // 内置的 Canny 引擎直接扫描灰度图像，其他引擎需要 Bitmap
+        boolean nativeInput = engine == ScanEngines.CONTOUR || engine == ScanEngines.LINES;
+        NativeImage image = SmartCropper.decode(path, mMaxDim, nativeInput);
+        if (image == null) {
+            throw new IOException("Cannot decode " + path);
+        }
+        boolean completed;
+        try {
+            if (nativeInput) {
+                completed = SmartCropper.scanNative(image, outQuad, mOptions, context);
+            } else {
+                Bitmap bitmap = image.toBitmap();
+                try {
+                    completed = SmartCropper.scanInto(bitmap, outQuad, mOptions, context);
+                } finally {
+                    SmartCropper.getBitmapPool().put(bitmap);
+                }
+            }
+            // 解码时可能按 DCT 缩放，顶点换算回原图坐标
+            float scaleX = (float) bounds.outWidth / image.getWidth();
+            float scaleY = (float) bounds.outHeight / image.getHeight();
+            for (int i = 0; i < 8; i += 2) {
+                outQuad[i] *= scaleX;
+                outQuad[i + 1] *= scaleY;
+            }
+        } finally {
+            image.close();
+        }
+        return completed;
+    }
+
+    private void onWorkerFinished() {
+        if (mActiveWorkers.decrementAndGet() == 0) {
+            releaseNativeThreads();
+            finish();
+        }
+    }
+
+    private void finish() {
+        long elapsedMillis = (System.nanoTime() - mStartTime) / 1000000;
+        mResult = new Result(mSources.size(), mScannedCount.get(), mFailedCount.get(), mTimedOutCount.get(),
+                elapsedMillis, mCancelled);
+        mFinishedLatch.countDown();
+        mListener.onFinished(mResult);
+    }
+
+    private static void acquireNativeThreads(int numThreads) {
+        synchronized (sNumThreadsLock) {
+            int oldNumThreads = SmartCropper.nativeSetNumThreads(numThreads);
+            if (sActiveBatches++ == 0) {
+                sSavedNumThreads = oldNumThreads;
+            }
+        }
+    }
+
+    private static void releaseNativeThreads() {
+        synchronized (sNumThreadsLock) {
+            if (--sActiveBatches == 0) {
+                SmartCropper.nativeSetNumThreads(sSavedNumThreads);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+package me.pqpo.smartcropperlib;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按内存大小分级复用 Bitmap 的缓存池。
+ * 取出时优先复用内存不小于所需大小的 Bitmap（通过 reconfigure 调整尺寸和格式），
+ * 总大小超过上限时按最久未使用的顺序回收。
+ * 放入池中的 Bitmap 由池持有，调用方不能再使用。
+ */
+public class BitmapPool {
+
+    /** 默认上限，可容纳一张 12MP ARGB_8888 图片及若干中间结果 */
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    /** 复用的 Bitmap 内存最多为所需大小的倍数，避免小图长期占用大块内存 */
+    private static final int MAX_SIZE_MULTIPLE = 2;
+
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> mSizeClasses = new TreeMap<>();
+    private final LinkedHashSet<Bitmap> mLruBitmaps = new LinkedHashSet<>();
+    private final int mMaxSize;
+    private int mCurrentSize;
+
+    public BitmapPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public BitmapPool(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be >= 0");
+        }
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * 获取指定尺寸和格式的 Bitmap，池中没有合适的 Bitmap 时新建
+     * 复用的 Bitmap 内容未定义，需由调用方完整写入
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int required = getByteCount(width, height, config);
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = mSizeClasses.ceilingEntry(required);
+        if (entry != null && entry.getKey() <= (long) required * MAX_SIZE_MULTIPLE) {
+            int size = entry.getKey();
+            ArrayDeque<Bitmap> bitmaps = entry.getValue();
+            Bitmap bitmap = bitmaps.pollLast();
+            if (bitmaps.isEmpty()) {
+                mSizeClasses.remove(size);
+            }
+            mLruBitmaps.remove(bitmap);
+            mCurrentSize -= size;
+            if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config) {
+                bitmap.reconfigure(width, height, config);
+            }
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * 归还 Bitmap，不可复用或超出上限时直接回收
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || mLruBitmaps.contains(bitmap)) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || size > mMaxSize) {
+            bitmap.recycle();
+            return;
+        }
+        ArrayDeque<Bitmap> bitmaps = mSizeClasses.get(size);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            mSizeClasses.put(size, bitmaps);
+        }
+        bitmaps.addLast(bitmap);
+        mLruBitmaps.add(bitmap);
+        mCurrentSize += size;
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * 按最久未使用的顺序回收，直到总大小不超过 maxSize
+     */
+    public synchronized void trimToSize(int maxSize) {
+        Iterator<Bitmap> iterator = mLruBitmaps.iterator();
+        while (mCurrentSize > maxSize && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+            int size = bitmap.getAllocationByteCount();
+            ArrayDeque<Bitmap> bitmaps = mSizeClasses.get(size);
+            if (bitmaps != null) {
+                bitmaps.remove(bitmap);
+                if (bitmaps.isEmpty()) {
+                    mSizeClasses.remove(size);
+                }
+            }
+            mCurrentSize -= size;
+            bitmap.recycle();
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized int getCurrentSize() {
+        return mCurrentSize;
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    private static int getByteCount(int width, int height, Bitmap.Config config) {
+        int bytesPerPixel;
+        switch (config) {
+            case ALPHA_8:
+                bytesPerPixel = 1;
+                break;
+            case RGB_565:
+            case ARGB_4444:
+                bytesPerPixel = 2;
+                break;
+            default:
+                bytesPerPixel = 4;
+                break;
+        }
+        return width * height * bytesPerPixel;
+    }
+
+}
@@ -0,0 +1,135 @@
+package me.pqpo.smartcropperlib;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * HED 模型的推理耗时测试，按配置依次创建 {@link ImageDetector}，在同一张样例图片上测量单次边缘检测的耗时，
+ * 用于按设备档次选择 {@link ImageDetector.Config}。耗时包括输入转换、推理和输出阈值化，需在后台线程调用。
+ */
+public final class DetectorBenchmark {
+
+    /** 每个配置正式计时前的预热次数，排除首次推理的内存分配和 delegate 初始化 */
+    public static final int DEFAULT_WARMUP_RUNS = 3;
+
+    /**
+     * 单个配置的测试结果（毫秒）
+     */
+    public static final class Result {
+
+        private final ImageDetector.Config mConfig;
+        private final boolean mCpuDelegateEnabled;
+        private final double mMeanMillis;
+        private final double mMedianMillis;
+        private final double mMinMillis;
+        private final double mMaxMillis;
+
+        Result(ImageDetector.Config config, boolean cpuDelegateEnabled, long[] timings) {
+            mConfig = config;
+            mCpuDelegateEnabled = cpuDelegateEnabled;
+            Arrays.sort(timings);
+            long total = 0;
+            for (long timing : timings) {
+                total += timing;
+            }
+            mMeanMillis = total / 1e6 / timings.length;
+            mMedianMillis = timings[timings.length / 2] / 1e6;
+            mMinMillis = timings[0] / 1e6;
+            mMaxMillis = timings[timings.length - 1] / 1e6;
+        }
+
+        public ImageDetector.Config getConfig() {
+            return mConfig;
+        }
+
+        /**
+         * @return 是否实际启用了 XNNPACK delegate，运行时不支持时为 false
+         */
+        public boolean isCpuDelegateEnabled() {
+            return mCpuDelegateEnabled;
+        }
+
+        public double getMeanMillis() {
+            return mMeanMillis;
+        }
+
+        public double getMedianMillis() {
+            return mMedianMillis;
+        }
+
+        public double getMinMillis() {
+            return mMinMillis;
+        }
+
+        public double getMaxMillis() {
+            return mMaxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "DetectorBenchmark.Result{" + mConfig
+                    + (mConfig.useCpuDelegate && !mCpuDelegateEnabled ? " (cpu delegate unsupported)" : "")
+                    + String.format(", mean=%.2fms, median=%.2fms, min=%.2fms, max=%.2fms",
+                    mMeanMillis, mMedianMillis, mMinMillis, mMaxMillis) + "}";
+        }
+    }
+
+    private DetectorBenchmark() {
+    }
+
+    /**
+     * 依次测试各个配置
+     * @param modelFile assets 中的模型文件，为 null 时使用内置模型
+     * @param configs 待测试的配置
+     * @param sample 样例图片，建议使用实际拍摄的文档照片
+     * @param runs 每个配置计时的次数
+     * @return 与 configs 顺序一致的测试结果
+     */
+    public static List<Result> run(Context context, String modelFile, List<ImageDetector.Config> configs,
+                                   Bitmap sample, int runs) throws IOException {
+        return run(context, modelFile, configs, sample, DEFAULT_WARMUP_RUNS, runs);
+    }
+
+    /**
+     * 依次测试各个配置
+     * @param warmupRuns 每个配置正式计时前的预热次数
+     * @see #run(Context, String, List, Bitmap, int)
+     */
+    public static List<Result> run(Context context, String modelFile, List<ImageDetector.Config> configs,
+                                   Bitmap sample, int warmupRuns, int runs) throws IOException {
+        if (configs == null || sample == null) {
+            throw new IllegalArgumentException("configs and sample cannot be null");
+        }
+        if (warmupRuns < 0 || runs <= 0) {
+            throw new IllegalArgumentException("warmupRuns must be >= 0 and runs must be > 0");
+        }
+        List<Result> results = new ArrayList<>(configs.size());
+        for (ImageDetector.Config config : configs) {
+            ImageDetector imageDetector = new ImageDetector(context, modelFile, config);
+            try {
+                int maskSize = imageDetector.getMaskSize();
+                ByteBuffer mask = ByteBuffer.allocateDirect(maskSize * maskSize);
+                for (int i = 0; i < warmupRuns; i++) {
+                    imageDetector.detectMask(sample, mask);
+                }
+                long[] timings = new long[runs];
+                for (int i = 0; i < runs; i++) {
+                    long start = System.nanoTime();
+                    imageDetector.detectMask(sample, mask);
+                    timings[i] = System.nanoTime() - start;
+                }
+                results.add(new Result(config, imageDetector.isCpuDelegateEnabled(), timings));
+            } finally {
+                imageDetector.close();
+            }
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,82 @@
+package me.pqpo.smartcropperlib;
+
+/**
+ * native JPEG 编码参数，用于 {@link SmartCropper#encodeJpeg(NativeImage, String, EncodeOptions)} 等方法。
+ * 单通道图像（灰度/二值）直接编码为灰度 JPEG，不再展开为 RGBA。
+ */
+public class EncodeOptions {
+
+    // 色度下采样：4:4:4 不下采样，4:2:2 水平减半，4:2:0 水平和垂直都减半
+    public static final int SUBSAMPLING_444 = 444;
+    public static final int SUBSAMPLING_422 = 422;
+    public static final int SUBSAMPLING_420 = 420;
+
+    int quality = 90;
+    int chromaQuality = 0;
+    int chromaSubsampling = SUBSAMPLING_420;
+    boolean progressive = false;
+    boolean optimize = false;
+    boolean grayscale = false;
+
+    /**
+     * @param quality 编码质量 0-100，默认 90
+     */
+    public EncodeOptions setQuality(int quality) {
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality must be in [0, 100]");
+        }
+        this.quality = quality;
+        return this;
+    }
+
+    /**
+     * 单独设置色度分量的质量，低于 quality 时可进一步减小彩色图片体积
+     * @param chromaQuality 0-100，0 表示与 quality 相同
+     */
+    public EncodeOptions setChromaQuality(int chromaQuality) {
+        if (chromaQuality < 0 || chromaQuality > 100) {
+            throw new IllegalArgumentException("chromaQuality must be in [0, 100]");
+        }
+        this.chromaQuality = chromaQuality;
+        return this;
+    }
+
+    /**
+     * 设置彩色 JPEG 的色度下采样方式，灰度 JPEG 忽略此参数
+     * @param chromaSubsampling {@link #SUBSAMPLING_444}、{@link #SUBSAMPLING_422} 或 {@link #SUBSAMPLING_420}，
+     *                          默认 420；444 保留完整色度，适合彩色文字和细线
+     */
+    public EncodeOptions setChromaSubsampling(int chromaSubsampling) {
+        if (chromaSubsampling != SUBSAMPLING_444 && chromaSubsampling != SUBSAMPLING_422
+                && chromaSubsampling != SUBSAMPLING_420) {
+            throw new IllegalArgumentException("chromaSubsampling must be 444, 422 or 420");
+        }
+        this.chromaSubsampling = chromaSubsampling;
+        return this;
+    }
+
+    /**
+     * @param progressive 是否输出渐进式 JPEG
+     */
+    public EncodeOptions setProgressive(boolean progressive) {
+        this.progressive = progressive;
+        return this;
+    }
+
+    /**
+     * @param optimize 是否优化 Huffman 表，文件更小但编码稍慢
+     */
+    public EncodeOptions setOptimize(boolean optimize) {
+        this.optimize = optimize;
+        return this;
+    }
+
+    /**
+     * @param grayscale 彩色图像是否也转换为灰度 JPEG，单通道图像始终输出灰度 JPEG
+     */
+    public EncodeOptions setGrayscale(boolean grayscale) {
+        this.grayscale = grayscale;
+        return this;
+    }
+
+}
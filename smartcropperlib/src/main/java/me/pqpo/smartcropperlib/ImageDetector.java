@@ -5,27 +5,112 @@ import android.content.res.AssetFileDescriptor;
 import android.graphics.Bitmap;
 import android.text.TextUtils;
 
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.Interpreter;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
 public class ImageDetector {
 
+    /**
+     * 推理参数，用于 {@link SmartCropper#buildImageDetector(Context, String, Config)}，
+     * 不同设备上的最佳组合可以用 {@link DetectorBenchmark} 测出
+     */
+    public static class Config {
+
+        int numThreads = 1;
+        boolean useCpuDelegate = false;
+        boolean allowFp16PrecisionLoss = false;
+        float threshold = 0.2f;
+        boolean softMask = false;
+
+        /**
+         * @param numThreads 推理线程数，默认 1
+         */
+        public Config setNumThreads(int numThreads) {
+            if (numThreads <= 0) {
+                throw new IllegalArgumentException("numThreads must be > 0");
+            }
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /**
+         * @param useCpuDelegate 是否使用针对 CPU 优化的 XNNPACK delegate，
+         *                       运行时的 TensorFlow Lite 不支持时忽略，见 {@link ImageDetector#isCpuDelegateEnabled()}
+         */
+        public Config setUseCpuDelegate(boolean useCpuDelegate) {
+            this.useCpuDelegate = useCpuDelegate;
+            return this;
+        }
+
+        /**
+         * @param allowFp16PrecisionLoss 是否允许 float32 运算以 fp16 精度执行，支持的设备上更快，边缘图会有轻微差异
+         */
+        public Config setAllowFp16PrecisionLoss(boolean allowFp16PrecisionLoss) {
+            this.allowFp16PrecisionLoss = allowFp16PrecisionLoss;
+            return this;
+        }
+
+        /**
+         * @param threshold 边缘概率大于该值的像素视为边缘，取值 (0, 1)，默认 0.2
+         */
+        public Config setThreshold(float threshold) {
+            if (!(threshold > 0 && threshold < 1)) {
+                throw new IllegalArgumentException("threshold must be in (0, 1)");
+            }
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * @param softMask 为 true 时 {@link ImageDetector#detectMask(Bitmap, ByteBuffer)} 输出边缘概率 * 255 而不是二值掩码，
+         *                 HED 引擎扫描时按 threshold 提取轮廓，并按四条边上的平均概率为候选四边形加权评分
+         */
+        public Config setSoftMask(boolean softMask) {
+            this.softMask = softMask;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "Config{threads=" + numThreads
+                    + ", cpuDelegate=" + useCpuDelegate
+                    + ", fp16=" + allowFp16PrecisionLoss
+                    + ", threshold=" + threshold
+                    + (softMask ? ", soft}" : "}");
+        }
+    }
+
     private static final String MODEL_FILE = "models/hed_lite_model_quantize.tflite";
 
     private int desiredSize = 256;
 
 
     private int[] intValues = new int[desiredSize * desiredSize];
+    // Bitmap 输出使用的掩码缓冲，每次检测复用
+    private ByteBuffer maskData = ByteBuffer.allocateDirect(desiredSize * desiredSize);
 
     protected ByteBuffer imgData = null;
     protected ByteBuffer outImgData = null;
 
+    // 加载模型时按输入输出张量的类型确定：uint8 输入每通道 1 字节，uint8 输出按 0-255 对应概率 0-1
+    private boolean quantizedInput;
+    private boolean quantizedOutput;
+    private boolean cpuDelegateEnabled;
+    private float threshold;
+    private boolean softMask;
+    // float32 输出的只读视图，随 outImgData 复用
+    private FloatBuffer outFloatView;
+
     protected Interpreter tflite;
 
     public ImageDetector(Context context) throws IOException {
@@ -33,29 +118,152 @@ public class ImageDetector {
     }
 
     public ImageDetector(Context context, String modelFile) throws IOException {
+        this(context, modelFile, null);
+    }
+
+    /**
+     * @param config 推理参数，为 null 时单线程运行，不使用 delegate
+     */
+    public ImageDetector(Context context, String modelFile, Config config) throws IOException {
         if (TextUtils.isEmpty(modelFile)) {
             modelFile = MODEL_FILE;
         }
+        if (config == null) {
+            config = new Config();
+        }
+        threshold = config.threshold;
+        softMask = config.softMask;
         MappedByteBuffer tfliteModel = loadModelFile(context, modelFile);
         Interpreter.Options tfliteOptions = new Interpreter.Options();
+        tfliteOptions.setNumThreads(config.numThreads);
+        tfliteOptions.setAllowFp16PrecisionForFp32(config.allowFp16PrecisionLoss);
+        if (config.useCpuDelegate) {
+            cpuDelegateEnabled = enableCpuDelegate(tfliteOptions);
+        }
         tflite = new Interpreter(tfliteModel, tfliteOptions);
-        imgData = ByteBuffer.allocateDirect(desiredSize * desiredSize * 3 * Float.SIZE / Byte.SIZE);
+        quantizedInput = tflite.getInputTensor(0).dataType() == DataType.UINT8;
+        quantizedOutput = tflite.getOutputTensor(0).dataType() == DataType.UINT8;
+        int inputBytes = quantizedInput ? 1 : Float.SIZE / Byte.SIZE;
+        imgData = ByteBuffer.allocateDirect(desiredSize * desiredSize * 3 * inputBytes);
         imgData.order(ByteOrder.nativeOrder());
 
-        outImgData = ByteBuffer.allocateDirect(desiredSize * desiredSize * Float.SIZE / Byte.SIZE);
+        int outputBytes = quantizedOutput ? 1 : Float.SIZE / Byte.SIZE;
+        outImgData = ByteBuffer.allocateDirect(desiredSize * desiredSize * outputBytes);
         outImgData.order(ByteOrder.nativeOrder());
+        if (!quantizedOutput) {
+            outFloatView = outImgData.asFloatBuffer().asReadOnlyBuffer();
+        }
     }
 
     public synchronized Bitmap detectImage(Bitmap bitmap) {
         if (bitmap == null) {
             return null;
         }
+        runModel(bitmap);
+        return convertOutputBufferToBitmap(outImgData);
+    }
+
+    /**
+     * 检测边缘并输出 ALPHA_8 二值掩码，边缘为 255，其余为 0，每像素 1 字节
+     * 扫描时直接按单通道处理，不需要颜色转换
+     */
+    public synchronized Bitmap detectMask(Bitmap bitmap) {
+        if (bitmap == null) {
+            return null;
+        }
+        runModel(bitmap);
+        return convertOutputBufferToMask(outImgData);
+    }
+
+    /**
+     * 检测边缘并把模型分辨率的二值掩码写入调用方提供的缓冲，边缘为 255，其余为 0，不创建 Bitmap；
+     * {@link Config#setSoftMask(boolean)} 开启时写入边缘概率 * 255
+     * @param outMask direct ByteBuffer，容量至少为 {@link #getMaskSize()} 的平方，按行紧凑写入，每像素 1 字节
+     * @return 检测成功返回 true，outMask 不是 direct ByteBuffer 或容量不足时返回 false
+     */
+    public synchronized boolean detectMask(Bitmap bitmap, ByteBuffer outMask) {
+        int maskBytes = desiredSize * desiredSize;
+        if (bitmap == null || outMask == null || !outMask.isDirect() || outMask.capacity() < maskBytes) {
+            return false;
+        }
+        runModel(bitmap);
+        if (!decodeOutput(outMask, softMask)) {
+            return false;
+        }
+        outMask.rewind();
+        return true;
+    }
+
+    /**
+     * 最近一次检测输出的边缘概率（0-1），按行紧凑排列，共 {@link #getMaskSize()} 的平方个值
+     * 返回的是模型输出缓冲的只读视图，不做拷贝，下一次检测时会被覆盖；使用 {@link ImageDetectorPool} 时需在归还实例前读取
+     * @return 概率视图，模型输出为 uint8 时返回 null
+     */
+    public synchronized FloatBuffer getEdgeProbabilities() {
+        if (outFloatView == null) {
+            return null;
+        }
+        outFloatView.rewind();
+        return outFloatView;
+    }
+
+    // 实例自己的掩码缓冲，HED 引擎借出实例期间直接在其上扫描
+    ByteBuffer getMaskBuffer() {
+        return maskData;
+    }
+
+    /**
+     * @return 边缘概率阈值
+     */
+    public float getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return {@link #detectMask(Bitmap, ByteBuffer)} 是否输出边缘概率
+     */
+    public boolean isSoftMask() {
+        return softMask;
+    }
+
+    /**
+     * @return 是否启用了 XNNPACK delegate
+     */
+    public boolean isCpuDelegateEnabled() {
+        return cpuDelegateEnabled;
+    }
+
+    /**
+     * 释放模型占用的 native 内存，之后不能再使用
+     */
+    public synchronized void close() {
+        tflite.close();
+    }
+
+    /**
+     * @return 模型输入是否为 uint8
+     */
+    public boolean isQuantizedInput() {
+        return quantizedInput;
+    }
+
+    /**
+     * @return 边缘掩码的边长，即模型的输入输出分辨率
+     */
+    public int getMaskSize() {
+        return desiredSize;
+    }
+
+    private void runModel(Bitmap bitmap) {
         imgData.clear();
         outImgData.clear();
-        bitmap = Bitmap.createScaledBitmap(bitmap, desiredSize, desiredSize, false);
-        convertBitmapToByteBuffer(bitmap);
+        // native 层一次完成缩放和 RGBA 到 RGB（uint8 或 float）的转换，直接写入输入缓冲
+        if (!SmartCropper.nativeFillModelInput(bitmap, desiredSize, !quantizedInput, imgData)) {
+            bitmap = Bitmap.createScaledBitmap(bitmap, desiredSize, desiredSize, false);
+            convertBitmapToByteBuffer(bitmap);
+        }
+        imgData.rewind();
         tflite.run(imgData, outImgData);
-        return convertOutputBufferToBitmap(outImgData);
     }
 
     private void convertBitmapToByteBuffer(Bitmap bitmap) {
@@ -69,6 +277,12 @@ public class ImageDetector {
         for (int i = 0; i < desiredSize; ++i) {
             for (int j = 0; j < desiredSize; ++j) {
                 final int pixelValue = intValues[pixel++];
+                if (quantizedInput) {
+                    imgData.put((byte) ((pixelValue >> 16) & 0xFF));
+                    imgData.put((byte) ((pixelValue >> 8) & 0xFF));
+                    imgData.put((byte) (pixelValue & 0xFF));
+                    continue;
+                }
                 imgData.putFloat(((pixelValue >> 16) & 0xFF));
                 imgData.putFloat(((pixelValue >> 8) & 0xFF));
                 imgData.putFloat((pixelValue & 0xFF));
@@ -77,24 +291,44 @@ public class ImageDetector {
     }
 
     private Bitmap convertOutputBufferToBitmap(ByteBuffer outImgData) {
-        if (outImgData == null) {
+        if (outImgData == null || !decodeOutput(maskData, false)) {
             return null;
         }
-        outImgData.rewind();
         Bitmap bitmap_out = Bitmap.createBitmap(desiredSize , desiredSize, Bitmap.Config.ARGB_8888);
-        int[] pixels = new int[desiredSize * desiredSize];
+        // 输入已经写入 imgData，复用 intValues 存放输出像素
         for (int i = 0; i < desiredSize * desiredSize; i++) {
-            float val = outImgData.getFloat();
-            if (val > 0.2) {
-                pixels[i] = 0xFFFFFFFF;
-            } else {
-                pixels[i] = 0xFF000000;
-            }
+            intValues[i] = maskData.get(i) != 0 ? 0xFFFFFFFF : 0xFF000000;
         }
-        bitmap_out.setPixels(pixels, 0, desiredSize, 0, 0, desiredSize, desiredSize);
+        bitmap_out.setPixels(intValues, 0, desiredSize, 0, 0, desiredSize, desiredSize);
         return bitmap_out;
     }
 
+    private Bitmap convertOutputBufferToMask(ByteBuffer outImgData) {
+        if (outImgData == null || !decodeOutput(maskData, false)) {
+            return null;
+        }
+        Bitmap mask = Bitmap.createBitmap(desiredSize, desiredSize, Bitmap.Config.ALPHA_8);
+        mask.copyPixelsFromBuffer(maskData);
+        return mask;
+    }
+
+    // 在 native 层整块阈值化（或按概率量化）模型输出，写入 outMask
+    private boolean decodeOutput(ByteBuffer outMask, boolean soft) {
+        outMask.clear();
+        return SmartCropper.nativeDecodeModelOutput(outImgData, desiredSize, quantizedOutput, threshold, soft, outMask);
+    }
+
+    // Interpreter.Options.setUseXNNPACK 在 TensorFlow Lite 2.3 才加入，通过反射调用以兼容依赖的旧版本
+    private static boolean enableCpuDelegate(Interpreter.Options tfliteOptions) {
+        try {
+            Method method = Interpreter.Options.class.getMethod("setUseXNNPACK", boolean.class);
+            method.invoke(tfliteOptions, true);
+            return true;
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return false;
+        }
+    }
+
     private MappedByteBuffer loadModelFile(Context activity, String modelFile) throws IOException {
         AssetFileDescriptor fileDescriptor = activity.getAssets().openFd(modelFile);
         FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
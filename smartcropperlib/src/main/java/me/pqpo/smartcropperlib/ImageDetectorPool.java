@@ -0,0 +1,142 @@
+package me.pqpo.smartcropperlib;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 多个 HED 模型实例组成的池，每个实例有自己的 Interpreter 和输入输出缓冲，多个线程可以同时做边缘检测。
+ * 空闲实例保存在无锁队列中，取出和归还都不加锁；池中实例全部被占用时按 {@link #POLICY_BLOCK} 等待
+ * 或按 {@link #POLICY_FAIL_FAST} 立即返回 null。
+ * 通过 {@link SmartCropper#buildImageDetectorPool(Context, String, ImageDetector.Config, int, int)} 创建后供 HED 引擎使用。
+ */
+public final class ImageDetectorPool implements AutoCloseable {
+
+    /** 没有空闲实例时等待其他线程归还 */
+    public static final int POLICY_BLOCK = 0;
+    /** 没有空闲实例时 {@link #acquire()} 立即返回 null，HED 引擎此时改用 Canny 轮廓扫描 */
+    public static final int POLICY_FAIL_FAST = 1;
+
+    private final ImageDetector[] mDetectors;
+    private final ConcurrentLinkedQueue<ImageDetector> mFreeDetectors = new ConcurrentLinkedQueue<>();
+    // 许可数与空闲实例数一致，只用于 POLICY_BLOCK 时的等待
+    private final Semaphore mAvailable;
+    private final int mPolicy;
+    // 停用后不再借出实例，见 closeWhenIdle()
+    private volatile boolean mRetired = false;
+
+    /**
+     * @param modelFile assets 中的模型文件，为 null 时使用内置模型
+     * @param config 每个实例的推理参数，为 null 时使用默认参数；多个实例并发时推理线程数一般设为 1
+     * @param size 实例数量，一般与并发扫描的线程数相同
+     * @param policy {@link #POLICY_BLOCK} 或 {@link #POLICY_FAIL_FAST}
+     */
+    public ImageDetectorPool(Context context, String modelFile, ImageDetector.Config config, int size, int policy)
+            throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be > 0");
+        }
+        if (policy != POLICY_BLOCK && policy != POLICY_FAIL_FAST) {
+            throw new IllegalArgumentException("policy must be POLICY_BLOCK or POLICY_FAIL_FAST");
+        }
+        mDetectors = new ImageDetector[size];
+        try {
+            for (int i = 0; i < size; i++) {
+                mDetectors[i] = new ImageDetector(context, modelFile, config);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        for (ImageDetector detector : mDetectors) {
+            mFreeDetectors.offer(detector);
+        }
+        mAvailable = new Semaphore(size);
+        mPolicy = policy;
+    }
+
+    /**
+     * 取出一个空闲实例，使用完毕后必须调用 {@link #release(ImageDetector)} 归还
+     * @return 空闲实例；{@link #POLICY_FAIL_FAST} 下没有空闲实例，或池已被 {@link #closeWhenIdle()} 停用时返回 null
+     */
+    public ImageDetector acquire() {
+        if (mRetired) {
+            return null;
+        }
+        if (mPolicy == POLICY_FAIL_FAST) {
+            if (!mAvailable.tryAcquire()) {
+                return null;
+            }
+        } else {
+            mAvailable.acquireUninterruptibly();
+        }
+        if (mRetired) {
+            // 许可留给等待回收的线程
+            mAvailable.release();
+            return null;
+        }
+        // 已获得许可，队列中一定有空闲实例
+        return mFreeDetectors.poll();
+    }
+
+    /**
+     * 归还 {@link #acquire()} 取出的实例
+     */
+    public void release(ImageDetector detector) {
+        if (detector == null) {
+            return;
+        }
+        mFreeDetectors.offer(detector);
+        mAvailable.release();
+    }
+
+    public int getSize() {
+        return mDetectors.length;
+    }
+
+    public int getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * @return 边缘掩码的边长，即模型的输入输出分辨率
+     */
+    public int getMaskSize() {
+        return mDetectors[0].getMaskSize();
+    }
+
+    /**
+     * 停用池：之后不再借出实例，在后台线程等待已借出的实例全部归还后释放所有实例，不阻塞调用方
+     * 替换 {@link SmartCropper} 使用的池时会自动调用
+     */
+    public synchronized void closeWhenIdle() {
+        if (mRetired) {
+            return;
+        }
+        mRetired = true;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mAvailable.acquireUninterruptibly(mDetectors.length);
+                close();
+            }
+        }, "ImageDetectorPool-close");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 释放所有实例，调用前需确保所有实例都已归还
+     */
+    @Override
+    public void close() {
+        for (ImageDetector detector : mDetectors) {
+            if (detector != null) {
+                detector.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package me.pqpo.smartcropperlib;
+
+import android.graphics.Bitmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 持有 native 层 cv::Mat 的图像句柄。
+ * 处理流程中的各个步骤直接在 native 内存中传递，只有调用 {@link #toBitmap()} 时才生成 Bitmap。
+ * 使用完毕后需要调用 {@link #close()} 释放 native 内存。
+ */
+public final class NativeImage implements AutoCloseable {
+
+    private long mNativePtr;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mChannels;
+
+    NativeImage(long nativePtr) {
+        if (nativePtr == 0) {
+            throw new IllegalStateException("native image is null");
+        }
+        mNativePtr = nativePtr;
+        int[] info = new int[3];
+        SmartCropper.nativeImageInfo(nativePtr, info);
+        mWidth = info[0];
+        mHeight = info[1];
+        mChannels = info[2];
+    }
+
+    /**
+     * 从 Bitmap 创建图像句柄，像素会拷贝到 native 内存，ALPHA_8 图片保持单通道
+     * @param srcBmp 原始图片
+     * @return 图像句柄
+     */
+    public static NativeImage fromBitmap(Bitmap srcBmp) {
+        if (srcBmp == null) {
+            throw new IllegalArgumentException("srcBmp cannot be null");
+        }
+        return new NativeImage(SmartCropper.nativeImageFromBitmap(srcBmp));
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return 通道数：1 为灰度/二值图像，4 为 RGBA
+     */
+    public int getChannels() {
+        return mChannels;
+    }
+
+    /**
+     * @return 紧凑存储时的像素字节数：width * height * channels
+     */
+    public int getByteCount() {
+        return mWidth * mHeight * mChannels;
+    }
+
+    /**
+     * 转换为 ARGB_8888 Bitmap，Bitmap 优先从 {@link SmartCropper#getBitmapPool()} 中复用
+     * @return Bitmap
+     */
+    public Bitmap toBitmap() {
+        return toBitmap(Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 转换为指定格式的 Bitmap，Bitmap 优先从 {@link SmartCropper#getBitmapPool()} 中复用
+     * @param config 支持 ARGB_8888 和 ALPHA_8，ALPHA_8 每像素 1 字节，彩色图像会转换为灰度
+     * @return Bitmap
+     */
+    public Bitmap toBitmap(Bitmap.Config config) {
+        if (config != Bitmap.Config.ARGB_8888 && config != Bitmap.Config.ALPHA_8) {
+            throw new IllegalArgumentException("config must be ARGB_8888 or ALPHA_8");
+        }
+        long nativePtr = getNativePtr();
+        Bitmap outBmp = SmartCropper.getBitmapPool().get(mWidth, mHeight, config);
+        SmartCropper.nativeImageCopyToBitmap(nativePtr, outBmp);
+        return outBmp;
+    }
+
+    /**
+     * 将像素写入调用方提供的 Bitmap，不产生新的分配
+     * @param outBmp 输出图片，尺寸需与图像一致且可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565
+     */
+    public void toBitmap(Bitmap outBmp) {
+        SmartCropper.checkOutBitmap(outBmp, mWidth, mHeight);
+        SmartCropper.nativeImageCopyToBitmap(getNativePtr(), outBmp);
+    }
+
+    /**
+     * 按行紧凑导出像素，单通道图像即为 width * height 字节的 8 位灰度数据
+     * @return 像素数据
+     */
+    public byte[] toByteArray() {
+        return SmartCropper.nativeImageToByteArray(getNativePtr());
+    }
+
+    /**
+     * 按行紧凑拷贝像素到 direct ByteBuffer，不产生 Java 堆分配
+     * @param buffer direct ByteBuffer，容量至少为 {@link #getByteCount()}
+     */
+    public void copyTo(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer must be a direct ByteBuffer");
+        }
+        if (!SmartCropper.nativeImageCopyToBuffer(getNativePtr(), buffer)) {
+            throw new IllegalArgumentException("buffer capacity must be at least " + getByteCount());
+        }
+    }
+
+    public boolean isClosed() {
+        return mNativePtr == 0;
+    }
+
+    long getNativePtr() {
+        if (mNativePtr == 0) {
+            throw new IllegalStateException("NativeImage has been closed");
+        }
+        return mNativePtr;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mNativePtr != 0) {
+            SmartCropper.nativeImageRelease(mNativePtr);
+            mNativePtr = 0;
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            close();
+        } finally {
+            super.finalize();
+        }
+    }
+
+}
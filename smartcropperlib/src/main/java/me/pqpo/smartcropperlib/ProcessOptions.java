@@ -0,0 +1,64 @@
+package me.pqpo.smartcropperlib;
+
+/**
+ * {@link SmartCropper#processFile(java.io.FileDescriptor, java.io.FileDescriptor, ProcessOptions)} 的处理参数。
+ */
+public class ProcessOptions {
+
+    /** 不做文档处理，只输出裁剪矫正后的彩色图片 */
+    public static final int MODE_NONE = -1;
+
+    int scanMaxDim = 1024;
+    ScanOptions scanOptions = null;
+    int mode = SmartCropper.DocumentMode.OCR_OPTIMIZED;
+    boolean qualityOptimization = true;
+    EncodeOptions encodeOptions = new EncodeOptions();
+
+    /**
+     * @param scanMaxDim 边缘检测使用的图像最大边长，JPEG 会直接按 DCT 缩放解码到该尺寸附近，默认 1024
+     */
+    public ProcessOptions setScanMaxDim(int scanMaxDim) {
+        if (scanMaxDim <= 0) {
+            throw new IllegalArgumentException("scanMaxDim must be > 0");
+        }
+        this.scanMaxDim = scanMaxDim;
+        return this;
+    }
+
+    /**
+     * @param scanOptions 边缘检测参数，为 null 时使用默认参数
+     */
+    public ProcessOptions setScanOptions(ScanOptions scanOptions) {
+        this.scanOptions = scanOptions;
+        return this;
+    }
+
+    /**
+     * @param mode {@link SmartCropper.DocumentMode} 中的处理模式，或 {@link #MODE_NONE}
+     */
+    public ProcessOptions setMode(int mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * @param qualityOptimization 是否根据文档质量自动调整处理参数，同
+     *                            {@link SmartCropper#processDocumentWithQualityOptimization(NativeImage, int)}，默认开启
+     */
+    public ProcessOptions setQualityOptimization(boolean qualityOptimization) {
+        this.qualityOptimization = qualityOptimization;
+        return this;
+    }
+
+    /**
+     * @param encodeOptions 输出 JPEG 的编码参数，处理结果为单通道时输出灰度 JPEG
+     */
+    public ProcessOptions setEncodeOptions(EncodeOptions encodeOptions) {
+        if (encodeOptions == null) {
+            throw new IllegalArgumentException("encodeOptions cannot be null");
+        }
+        this.encodeOptions = encodeOptions;
+        return this;
+    }
+
+}
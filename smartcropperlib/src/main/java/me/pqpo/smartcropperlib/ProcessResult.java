@@ -0,0 +1,94 @@
+package me.pqpo.smartcropperlib;
+
+import android.graphics.Point;
+
+/**
+ * {@link SmartCropper#processFile(java.io.FileDescriptor, java.io.FileDescriptor, ProcessOptions)} 的处理结果：
+ * 检测到的顶点、输出尺寸和各阶段耗时（毫秒）。
+ */
+public class ProcessResult {
+
+    static final int TIMING_DECODE = 0;
+    static final int TIMING_SCAN = 1;
+    static final int TIMING_CROP = 2;
+    static final int TIMING_PROCESS = 3;
+    static final int TIMING_ENCODE = 4;
+    static final int TIMING_COUNT = 5;
+
+    private final int[] mQuad;
+    private final int mWidth;
+    private final int mHeight;
+    private final long[] mTimings;
+
+    ProcessResult(int[] quad, int[] size, long[] timings) {
+        mQuad = quad;
+        mWidth = size[0];
+        mHeight = size[1];
+        mTimings = timings;
+    }
+
+    /**
+     * @return 原图坐标中的顶点，以 左上，右上，右下，左下排序
+     */
+    public Point[] getCropPoints() {
+        Point[] points = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            points[i] = new Point(mQuad[i * 2], mQuad[i * 2 + 1]);
+        }
+        return points;
+    }
+
+    /**
+     * @return 顶点坐标，按 x0, y0, x1, y1 ... 排列
+     */
+    public int[] getQuad() {
+        return mQuad.clone();
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getDecodeTime() {
+        return mTimings[TIMING_DECODE];
+    }
+
+    public long getScanTime() {
+        return mTimings[TIMING_SCAN];
+    }
+
+    public long getCropTime() {
+        return mTimings[TIMING_CROP];
+    }
+
+    public long getProcessTime() {
+        return mTimings[TIMING_PROCESS];
+    }
+
+    public long getEncodeTime() {
+        return mTimings[TIMING_ENCODE];
+    }
+
+    public long getTotalTime() {
+        long total = 0;
+        for (long timing : mTimings) {
+            total += timing;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessResult{" + mWidth + "x" + mHeight
+                + ", decode=" + getDecodeTime() + "ms"
+                + ", scan=" + getScanTime() + "ms"
+                + ", crop=" + getCropTime() + "ms"
+                + ", process=" + getProcessTime() + "ms"
+                + ", encode=" + getEncodeTime() + "ms}";
+    }
+
+}
@@ -0,0 +1,111 @@
+package me.pqpo.smartcropperlib;
+
+import android.graphics.Bitmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 实时预览中逐帧跟踪文档边框。
+ * 首帧或跟踪丢失后完整扫描一次，之后每帧只在上一帧四条边附近的窄带内重新拟合边缘，
+ * 连续多帧找不到足够的边缘时才重新完整扫描；输出的顶点经过平滑，小幅抖动会被忽略，适合直接绘制叠加层。
+ * 只使用 Canny 边缘检测，不经过 HED 模型。同一个 QuadTracker 只用于一路预览，使用完毕后需要调用 {@link #close()}。
+ */
+public final class QuadTracker implements AutoCloseable {
+
+    /** 当前帧没有找到四边形，outQuad 保持不变 */
+    public static final int STATE_LOST = 0;
+    /** 当前帧通过完整扫描找到四边形 */
+    public static final int STATE_DETECTED = 1;
+    /** 当前帧沿用上一帧的四边形跟踪得到 */
+    public static final int STATE_TRACKED = 2;
+
+    private long mNativePtr;
+
+    public QuadTracker() {
+        mNativePtr = SmartCropper.nativeTrackerCreate();
+    }
+
+    /**
+     * 跟踪相机 YUV_420_888 帧（如 CameraX ImageProxy）的 Y 平面，不做颜色转换
+     * @param yBuffer Y 平面的 direct ByteBuffer
+     * @param rowStride Y 平面的行跨度
+     * @param width 帧宽度
+     * @param height 帧高度
+     * @param rotation 帧需要顺时针旋转的角度（0, 90, 180, 270），输出的顶点为旋转后的坐标
+     * @param outQuad 长度至少为 8，按 左上，右上，右下，左下 依次写入 x, y
+     * @param options 完整扫描时使用的参数，为 null 时使用默认参数，可通过 {@link ScanOptions#withBudget(int)} 限制耗时
+     * @return {@link #STATE_LOST}、{@link #STATE_DETECTED} 或 {@link #STATE_TRACKED}
+     */
+    public synchronized int update(ByteBuffer yBuffer, int rowStride, int width, int height, int rotation,
+                                   float[] outQuad, ScanOptions options) {
+        if (yBuffer == null || !yBuffer.isDirect()) {
+            throw new IllegalArgumentException("yBuffer must be a direct ByteBuffer");
+        }
+        if (width <= 0 || height <= 0 || rowStride < width) {
+            throw new IllegalArgumentException("invalid frame size " + width + "x" + height + ", rowStride " + rowStride);
+        }
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("rotation must be 0, 90, 180 or 270");
+        }
+        checkQuad(outQuad);
+        return SmartCropper.nativeTrackerUpdateYuv(getNativePtr(), yBuffer, rowStride, width, height, rotation,
+                outQuad, options);
+    }
+
+    /**
+     * 跟踪 Bitmap 帧
+     * @param frame 当前帧，各帧尺寸需一致
+     * @param outQuad 长度至少为 8，按 左上，右上，右下，左下 依次写入 x, y
+     * @param options 完整扫描时使用的参数，为 null 时使用默认参数
+     * @return {@link #STATE_LOST}、{@link #STATE_DETECTED} 或 {@link #STATE_TRACKED}
+     */
+    public synchronized int update(Bitmap frame, float[] outQuad, ScanOptions options) {
+        if (frame == null) {
+            throw new IllegalArgumentException("frame cannot be null");
+        }
+        checkQuad(outQuad);
+        return SmartCropper.nativeTrackerUpdate(getNativePtr(), frame, outQuad, options);
+    }
+
+    /**
+     * 放弃当前跟踪结果，下一帧重新完整扫描，如切换相机或画面尺寸变化时调用
+     */
+    public synchronized void reset() {
+        SmartCropper.nativeTrackerReset(getNativePtr());
+    }
+
+    public boolean isClosed() {
+        return mNativePtr == 0;
+    }
+
+    private long getNativePtr() {
+        if (mNativePtr == 0) {
+            throw new IllegalStateException("QuadTracker has been closed");
+        }
+        return mNativePtr;
+    }
+
+    private static void checkQuad(float[] outQuad) {
+        if (outQuad == null || outQuad.length < 8) {
+            throw new IllegalArgumentException("The length of outQuad must be at least 8");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mNativePtr != 0) {
+            SmartCropper.nativeTrackerRelease(mNativePtr);
+            mNativePtr = 0;
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            close();
+        } finally {
+            super.finalize();
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package me.pqpo.smartcropperlib;
+
+/**
+ * 可复用的扫描上下文，持有 native 层的扫描器及其中间缓冲（缩小图、灰度图、各级模糊图、边缘图等）。
+ * 缓冲按上次扫描的分辨率保留，相同分辨率的连续扫描（如逐帧实时预览）不再重新分配这些内存。
+ * 同一个上下文同时只能在一个线程上使用，多线程并发扫描时每个线程使用各自的上下文。
+ * 使用完毕后需要调用 {@link #close()} 释放 native 内存。
+ */
+public final class ScanContext implements AutoCloseable {
+
+    private long mNativePtr;
+
+    public ScanContext() {
+        mNativePtr = SmartCropper.nativeScanContextCreate();
+    }
+
+    public boolean isClosed() {
+        return mNativePtr == 0;
+    }
+
+    long getNativePtr() {
+        if (mNativePtr == 0) {
+            throw new IllegalStateException("ScanContext has been closed");
+        }
+        return mNativePtr;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mNativePtr != 0) {
+            SmartCropper.nativeScanContextRelease(mNativePtr);
+            mNativePtr = 0;
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            close();
+        } finally {
+            super.finalize();
+        }
+    }
+
+}
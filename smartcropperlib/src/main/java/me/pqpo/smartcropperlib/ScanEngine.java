@@ -0,0 +1,22 @@
+package me.pqpo.smartcropperlib;
+
+import android.graphics.Bitmap;
+
+/**
+ * 边框扫描引擎，通过 {@link ScanOptions#setEngine(ScanEngine)} 为每次扫描单独指定。
+ * 内置引擎见 {@link ScanEngines}，也可以实现该接口接入其他检测方式。
+ */
+public interface ScanEngine {
+
+    /**
+     * 扫描边框顶点
+     * @param srcBmp 扫描图片
+     * @param outQuad 长度至少为 8，按 左上，右上，右下，左下 依次写入 x, y
+     * @param options 扫描参数，可能为 null
+     * @param context 扫描上下文，可能为 null
+     * @return 在时间预算内完成搜索时返回 true，超出预算提前结束时返回 false
+     * @throws IllegalStateException 图片无法扫描（如像素无法读取），此时不写入 outQuad；不能以返回 false 表示失败
+     */
+    boolean scan(Bitmap srcBmp, float[] outQuad, ScanOptions options, ScanContext context);
+
+}
@@ -0,0 +1,97 @@
+package me.pqpo.smartcropperlib;
+
+import android.graphics.Bitmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 内置的扫描引擎。
+ * 未指定引擎时，调用过 {@link SmartCropper#buildImageDetector(android.content.Context)} 则使用 {@link #HED}，否则使用 {@link #CONTOUR}。
+ */
+public final class ScanEngines {
+
+    // 与 native 层 Scanner.h 中的 ScanEngine 对应，HED 扫描的是边缘图，不做 Canny
+    static final int TYPE_CONTOUR = 0;
+    static final int TYPE_LINES = 1;
+    static final int TYPE_HED = 2;
+
+    /**
+     * 多组 Canny 阈值和模糊级别下提取轮廓并逼近四边形，适合背景与纸张对比明显的场景
+     */
+    public static final ScanEngine CONTOUR = new NativeScanEngine(TYPE_CONTOUR);
+
+    /**
+     * 在缩小后的边缘图上检测直线段，取上下左右四条主导直线求交，只做一次边缘检测，
+     * 低对比度背景下比轮廓引擎快得多，纸张边缘被遮挡一部分时也能找到顶点
+     */
+    public static final ScanEngine LINES = new NativeScanEngine(TYPE_LINES);
+
+    /**
+     * 使用 HED 模型生成边缘图后按轮廓扫描，需要先调用 {@link SmartCropper#buildImageDetector(android.content.Context)}，
+     * 只能用于 Bitmap 输入，YUV 帧等其他输入按轮廓扫描
+     */
+    public static final ScanEngine HED = new NativeScanEngine(TYPE_HED);
+
+    private ScanEngines() {
+    }
+
+    static ScanEngine getDefault() {
+        return SmartCropper.getImageDetectorPool() != null ? HED : CONTOUR;
+    }
+
+    static final class NativeScanEngine implements ScanEngine {
+
+        final int type;
+
+        NativeScanEngine(int type) {
+            this.type = type;
+        }
+
+        @Override
+        public boolean scan(Bitmap srcBmp, float[] outQuad, ScanOptions options, ScanContext context) {
+            if (type != TYPE_HED) {
+                return SmartCropper.scanNative(srcBmp, outQuad, null, type, options, context);
+            }
+            return scanHed(srcBmp, outQuad, null, options, context);
+        }
+
+        // 内置引擎直接写入 int 数组，不经过 float 数组中转
+        boolean scan(Bitmap srcBmp, int[] outQuad, ScanOptions options, ScanContext context) {
+            if (type != TYPE_HED) {
+                return SmartCropper.scanNative(srcBmp, null, outQuad, type, options, context);
+            }
+            return scanHed(srcBmp, null, outQuad, options, context);
+        }
+
+        // 结果写入 outQuadF 或 outQuad 之一
+        private static boolean scanHed(Bitmap srcBmp, float[] outQuadF, int[] outQuad, ScanOptions options,
+                                       ScanContext context) {
+            ImageDetectorPool detectorPool;
+            ImageDetector imageDetector;
+            // 池在借出前被替换（旧池已停用）时改从新池借出
+            do {
+                detectorPool = SmartCropper.getImageDetectorPool();
+                imageDetector = detectorPool != null ? detectorPool.acquire() : null;
+            } while (imageDetector == null && detectorPool != null
+                    && detectorPool != SmartCropper.getImageDetectorPool());
+            // 没有创建模型，或 POLICY_FAIL_FAST 下没有空闲实例时按轮廓扫描
+            if (imageDetector == null) {
+                return SmartCropper.scanNative(srcBmp, outQuadF, outQuad, TYPE_CONTOUR, options, context);
+            }
+            try {
+                // 掩码写入实例自己的缓冲，保持模型分辨率直接扫描，顶点按比例换算回原图；扫描完成前不归还实例
+                ByteBuffer mask = imageDetector.getMaskBuffer();
+                if (imageDetector.detectMask(srcBmp, mask)) {
+                    int maskThreshold = imageDetector.isSoftMask()
+                            ? Math.max(1, Math.round(imageDetector.getThreshold() * 255)) : 0;
+                    return SmartCropper.scanMask(srcBmp, mask, imageDetector.getMaskSize(), maskThreshold,
+                            outQuadF, outQuad, options, context);
+                }
+            } finally {
+                detectorPool.release(imageDetector);
+            }
+            return SmartCropper.scanNative(srcBmp, outQuadF, outQuad, TYPE_CONTOUR, options, context);
+        }
+    }
+
+}
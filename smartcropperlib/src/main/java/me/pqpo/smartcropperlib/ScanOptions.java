@@ -0,0 +1,100 @@
+package me.pqpo.smartcropperlib;
+
+/**
+ * 边框扫描参数，用于 {@link SmartCropper#scan(android.graphics.Bitmap, ScanOptions)} 等方法。
+ * 扫描会依次尝试多组 Canny 阈值和模糊级别，默认按顺序取第一个符合条件的四边形。
+ */
+public class ScanOptions {
+
+    boolean parallel = false;
+    boolean firstHit = true;
+    boolean refine = false;
+    int budgetMillis = 0;
+    boolean adaptive = false;
+    ScanEngine engine = null;
+    // 非 Bitmap 输入（YUV 帧、NativeImage、文件）使用的 native 引擎类型
+    int engineType = ScanEngines.TYPE_CONTOUR;
+
+    /**
+     * 创建限定扫描耗时的参数，适合实时预览等需要保证每帧耗时的场景
+     * 参数组合按代价从低到高尝试，每组之间检查是否超时，超时后返回已找到的最佳结果，
+     * 是否提前结束由 {@link SmartCropper#scanInto(android.graphics.Bitmap, int[], ScanOptions)} 等方法的返回值给出
+     * @param budgetMillis 时间预算（毫秒）
+     */
+    public static ScanOptions withBudget(int budgetMillis) {
+        return new ScanOptions().setBudget(budgetMillis);
+    }
+
+    /**
+     * @param parallel 是否在多个线程上同时评估所有参数组合，适合多核设备降低最坏情况下的扫描耗时
+     */
+    public ScanOptions setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * @param firstHit true 时按参数顺序取第一个符合条件的四边形，结果与默认扫描一致；
+     *                 false 时评估所有参数组合，按面积占比和直角程度评分取最佳四边形，结果更稳定
+     */
+    public ScanOptions setFirstHit(boolean firstHit) {
+        this.firstHit = firstHit;
+        return this;
+    }
+
+    /**
+     * 扫描在缩小到 500px 的图像上进行，大图上顶点可能偏离数个像素。
+     * @param refine 是否沿扫描到的四条边在原尺寸图像的小范围内拟合边缘直线，求交得到亚像素顶点，
+     *               耗时与边长成正比，远小于在原尺寸图像上重新扫描
+     * @see SmartCropper#scanInto(android.graphics.Bitmap, float[], ScanOptions)
+     */
+    public ScanOptions setRefine(boolean refine) {
+        this.refine = refine;
+        return this;
+    }
+
+    /**
+     * @param adaptive 是否先根据图像亮度中值估算 Canny 阈值、根据梯度幅值分布选择模糊级别，只做一次边缘检测；
+     *                 找不到四边形时再依次尝试所有参数组合，多数图片只需一次检测
+     */
+    public ScanOptions setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    /**
+     * @param budgetMillis 扫描的时间预算（毫秒），0 表示不限时，批量处理时可完整搜索所有参数组合
+     * @see #withBudget(int)
+     */
+    public ScanOptions setBudget(int budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("budgetMillis must be >= 0");
+        }
+        this.budgetMillis = budgetMillis;
+        return this;
+    }
+
+    /**
+     * @param engine 扫描引擎，为 null 时使用默认引擎，见 {@link ScanEngines}；
+     *               YUV 帧、NativeImage 和文件输入只支持 {@link ScanEngines#CONTOUR} 和 {@link ScanEngines#LINES}，
+     *               其他引擎在这些输入上按轮廓扫描
+     */
+    public ScanOptions setEngine(ScanEngine engine) {
+        this.engine = engine;
+        this.engineType = engine == ScanEngines.LINES ? ScanEngines.TYPE_LINES : ScanEngines.TYPE_CONTOUR;
+        return this;
+    }
+
+    ScanOptions copy() {
+        ScanOptions options = new ScanOptions();
+        options.parallel = parallel;
+        options.firstHit = firstHit;
+        options.refine = refine;
+        options.budgetMillis = budgetMillis;
+        options.adaptive = adaptive;
+        options.engine = engine;
+        options.engineType = engineType;
+        return options;
+    }
+
+}
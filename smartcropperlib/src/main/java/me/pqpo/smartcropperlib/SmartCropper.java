@@ -2,10 +2,16 @@ package me.pqpo.smartcropperlib;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Point;
 import android.util.Log;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import me.pqpo.smartcropperlib.utils.CropUtils;
 
@@ -15,17 +21,85 @@ import me.pqpo.smartcropperlib.utils.CropUtils;
 
 public class SmartCropper {
 
-    private static ImageDetector sImageDetector = null;
+    // 与 native 层 DocumentProcessor.h 中的 Operation 一一对应
+    private static final int OP_GRAYSCALE = 0;
+    private static final int OP_DENOISE = 1;
+    private static final int OP_ENHANCE_CONTRAST = 2;
+    private static final int OP_BINARIZE = 3;
+    private static final int OP_ADVANCED_DOCUMENT = 4;
+    private static final int OP_SMART_BINARIZE = 5;
+    private static final int OP_ADVANCED_DENOISE = 6;
+    private static final int OP_DOCUMENT = 7;
+    private static final int OP_ADVANCED_PIPELINE = 8;
+    private static final int OP_DOCUMENT_MODE = 9;
+    private static final int OP_QUALITY_OPTIMIZED = 10;
+
+    // native 扫描的返回值，与 smart_cropper.cpp 中的 ScanStatus 一一对应
+    private static final int SCAN_COMPLETED = 0;
+    private static final int SCAN_TIMED_OUT = 1;
+    private static final int SCAN_FAILED = 2;
+
+    private static volatile ImageDetectorPool sImageDetectorPool = null;
+
+    private static volatile BitmapPool sBitmapPool = new BitmapPool();
 
     public static void buildImageDetector(Context context) {
         SmartCropper.buildImageDetector(context, null);
     }
 
     public static void buildImageDetector(Context context, String modelFile) {
+        SmartCropper.buildImageDetector(context, modelFile, null);
+    }
+
+    /**
+     * 创建 HED 模型，所有扫描共用一个实例，同时只能有一个线程做边缘检测
+     * @param modelFile assets 中的模型文件，为 null 时使用内置模型
+     * @param config 推理线程数、delegate 等参数，为 null 时使用默认参数
+     */
+    public static void buildImageDetector(Context context, String modelFile, ImageDetector.Config config) {
+        SmartCropper.buildImageDetectorPool(context, modelFile, config, 1, ImageDetectorPool.POLICY_BLOCK);
+    }
+
+    /**
+     * 创建多个 HED 模型实例，多个线程（如 {@link #scanBatch(List, ScanOptions, Executor, BatchScan.Listener)}）
+     * 可以同时做边缘检测，替换之前创建的模型，旧模型在正在进行的检测结束后释放
+     * @param size 实例数量，一般与并发扫描的线程数相同
+     * @param policy 实例全部被占用时的处理方式，{@link ImageDetectorPool#POLICY_BLOCK} 或 {@link ImageDetectorPool#POLICY_FAIL_FAST}
+     * @see ImageDetectorPool
+     */
+    public static synchronized void buildImageDetectorPool(Context context, String modelFile,
+                                                           ImageDetector.Config config, int size, int policy) {
+        ImageDetectorPool oldPool = sImageDetectorPool;
         try {
-            sImageDetector = new ImageDetector(context, modelFile);
+            sImageDetectorPool = new ImageDetectorPool(context, modelFile, config, size, policy);
         } catch (IOException e) {
             e.printStackTrace();
+            return;
+        }
+        if (oldPool != null) {
+            oldPool.closeWhenIdle();
+        }
+    }
+
+    /**
+     * 获取处理结果复用的 Bitmap 缓存池，不再使用的结果可通过 {@link BitmapPool#put(Bitmap)} 归还
+     */
+    public static BitmapPool getBitmapPool() {
+        return sBitmapPool;
+    }
+
+    /**
+     * 替换 Bitmap 缓存池，原缓存池中的 Bitmap 会被回收
+     * @param bitmapPool 新的缓存池，传入 new BitmapPool(0) 可关闭复用
+     */
+    public static void setBitmapPool(BitmapPool bitmapPool) {
+        if (bitmapPool == null) {
+            throw new IllegalArgumentException("bitmapPool cannot be null");
+        }
+        BitmapPool oldPool = sBitmapPool;
+        sBitmapPool = bitmapPool;
+        if (oldPool != bitmapPool) {
+            oldPool.clear();
         }
     }
 
@@ -35,18 +109,418 @@ public class SmartCropper {
      * @return 返回顶点数组，以 左上，右上，右下，左下排序
      */
     public static Point[] scan(Bitmap srcBmp) {
+        return scan(srcBmp, (ScanOptions) null);
+    }
+
+    /**
+     * 输入图片扫描边框顶点
+     * @param srcBmp 扫描图片
+     * @param options 扫描参数，为 null 时使用默认参数
+     * @return 返回顶点数组，以 左上，右上，右下，左下排序
+     */
+    public static Point[] scan(Bitmap srcBmp, ScanOptions options) {
+        float[] quad = new float[8];
+        scanInto(srcBmp, quad, options);
+        return toPoints(quad);
+    }
+
+    /**
+     * 输入图片扫描边框顶点，结果写入调用方提供的数组，不创建 Point 对象，适合逐帧实时扫描
+     * 使用 HED 模型时边缘掩码写入模型实例自己的缓冲，按模型分辨率直接扫描，同样不产生逐帧分配
+     * @param srcBmp 扫描图片
+     * @param outQuad 长度至少为 8，按 左上，右上，右下，左下 依次写入 x, y
+     */
+    public static void scanInto(Bitmap srcBmp, int[] outQuad) {
+        scanInto(srcBmp, outQuad, null);
+    }
+
+    /**
+     * 输入图片扫描边框顶点，结果写入调用方提供的数组
+     * @param options 扫描参数，为 null 时使用默认参数
+     * @return 在时间预算内完成搜索时返回 true；超出 {@link ScanOptions#withBudget(int)} 的预算提前结束时返回 false，
+     *         此时顶点为已找到的最佳结果，未找到时为整张图片
+     * @throws IllegalStateException 图片像素无法读取（如已回收），此时不写入 outQuad
+     * @see #scanInto(Bitmap, int[])
+     */
+    public static boolean scanInto(Bitmap srcBmp, int[] outQuad, ScanOptions options) {
+        return scanInto(srcBmp, outQuad, options, null);
+    }
+
+    /**
+     * 输入图片扫描边框顶点，结果写入调用方提供的数组，中间缓冲复用 context 中已分配的内存
+     * @param context 扫描上下文，为 null 时每次扫描临时分配
+     * @see #scanInto(Bitmap, int[], ScanOptions)
+     */
+    public static boolean scanInto(Bitmap srcBmp, int[] outQuad, ScanOptions options, ScanContext context) {
+        if (srcBmp == null) {
+            throw new IllegalArgumentException("srcBmp cannot be null");
+        }
+        if (outQuad == null || outQuad.length < 8) {
+            throw new IllegalArgumentException("The length of outQuad must be at least 8");
+        }
+        ScanEngine engine = getScanEngine(options);
+        if (engine instanceof ScanEngines.NativeScanEngine) {
+            return ((ScanEngines.NativeScanEngine) engine).scan(srcBmp, outQuad, options, context);
+        }
+        float[] quad = new float[8];
+        boolean completed = engine.scan(srcBmp, quad, options, context);
+        for (int i = 0; i < 8; i++) {
+            outQuad[i] = Math.round(quad[i]);
+        }
+        return completed;
+    }
+
+    /**
+     * 输入图片扫描边框顶点，以亚像素坐标写入调用方提供的数组
+     * 配合 {@link ScanOptions#setRefine(boolean)} 使用，顶点在原尺寸图像上细化，可直接用于 {@link #crop(Bitmap, float[], Bitmap)}
+     * @param srcBmp 扫描图片
+     * @param outQuad 长度至少为 8，按 左上，右上，右下，左下 依次写入 x, y
+     * @param options 扫描参数，为 null 时使用默认参数
+     * @return 在时间预算内完成搜索时返回 true；超出 {@link ScanOptions#withBudget(int)} 的预算提前结束时返回 false，
+     *         此时顶点为已找到的最佳结果，未找到时为整张图片
+     * @throws IllegalStateException 图片像素无法读取（如已回收），此时不写入 outQuad
+     */
+    public static boolean scanInto(Bitmap srcBmp, float[] outQuad, ScanOptions options) {
+        return scanInto(srcBmp, outQuad, options, null);
+    }
+
+    /**
+     * 输入图片扫描边框顶点，以亚像素坐标写入调用方提供的数组，中间缓冲复用 context 中已分配的内存
+     * @param context 扫描上下文，为 null 时每次扫描临时分配
+     * @see #scanInto(Bitmap, float[], ScanOptions)
+     */
+    public static boolean scanInto(Bitmap srcBmp, float[] outQuad, ScanOptions options, ScanContext context) {
         if (srcBmp == null) {
             throw new IllegalArgumentException("srcBmp cannot be null");
         }
-        if (sImageDetector != null) {
-            Bitmap bitmap = sImageDetector.detectImage(srcBmp);
-            if (bitmap != null) {
-                srcBmp = Bitmap.createScaledBitmap(bitmap, srcBmp.getWidth(), srcBmp.getHeight(), false);
+        if (outQuad == null || outQuad.length < 8) {
+            throw new IllegalArgumentException("The length of outQuad must be at least 8");
+        }
+        return getScanEngine(options).scan(srcBmp, outQuad, options, context);
+    }
+
+    /**
+     * 在原尺寸图片上细化四边形顶点，只采样四条边附近的像素
+     * 适合细化 HED 模型或在缩小图上扫描得到的顶点，搜索范围按缩小到 500px 扫描的误差估算，
+     * 某条边附近找不到明显边缘时保持原位置
+     * @param srcBmp 原尺寸图片
+     * @param quad 待细化的顶点，长度至少为 8，按 左上，右上，右下，左下 排列
+     * @param outQuad 细化后的亚像素顶点，长度至少为 8，可以与 quad 为同一数组
+     */
+    public static void refine(Bitmap srcBmp, float[] quad, float[] outQuad) {
+        if (srcBmp == null || quad == null || outQuad == null) {
+            throw new IllegalArgumentException("srcBmp, quad and outQuad cannot be null");
+        }
+        if (quad.length < 8 || outQuad.length < 8) {
+            throw new IllegalArgumentException("The length of quad and outQuad must be at least 8");
+        }
+        nativeRefine(srcBmp, quad, outQuad);
+    }
+
+    static ImageDetectorPool getImageDetectorPool() {
+        return sImageDetectorPool;
+    }
+
+    static ScanEngine getScanEngine(ScanOptions options) {
+        if (options != null && options.engine != null) {
+            return options.engine;
+        }
+        return ScanEngines.getDefault();
+    }
+
+    // 内置引擎的 native 扫描，结果写入 outQuadF 或 outQuad 之一
+    static boolean scanNative(Bitmap srcBmp, float[] outQuadF, int[] outQuad, int engineType, ScanOptions options,
+                              ScanContext context) {
+        int status;
+        if (context == null) {
+            status = outQuadF != null ? nativeScanIntoF(srcBmp, outQuadF, engineType, options, 0)
+                    : nativeScanInto(srcBmp, outQuad, engineType, options, 0);
+        } else {
+            synchronized (context) {
+                long contextPtr = context.getNativePtr();
+                status = outQuadF != null ? nativeScanIntoF(srcBmp, outQuadF, engineType, options, contextPtr)
+                        : nativeScanInto(srcBmp, outQuad, engineType, options, contextPtr);
+            }
+        }
+        return checkScanStatus(status, "Cannot read the pixels of srcBmp");
+    }
+
+    // 在模型分辨率的边缘掩码上扫描，顶点换算为 srcBmp 的坐标，ScanOptions.refine 时在 srcBmp 上细化；
+    // maskThreshold 大于 0 时 mask 为边缘概率图（0-255），按该阈值提取轮廓；结果写入 outQuadF 或 outQuad 之一
+    static boolean scanMask(Bitmap srcBmp, ByteBuffer mask, int maskSize, int maskThreshold, float[] outQuadF,
+                            int[] outQuad, ScanOptions options, ScanContext context) {
+        int status;
+        if (context == null) {
+            status = nativeScanMask(srcBmp, mask, maskSize, maskSize, maskThreshold, outQuadF, outQuad, options, 0);
+        } else {
+            synchronized (context) {
+                status = nativeScanMask(srcBmp, mask, maskSize, maskSize, maskThreshold, outQuadF, outQuad, options,
+                        context.getNativePtr());
+            }
+        }
+        return checkScanStatus(status, "Cannot read the pixels of srcBmp");
+    }
+
+    // 扫描 native 图像，结果为亚像素坐标，context 为 null 时临时分配中间缓冲
+    static boolean scanNative(NativeImage src, float[] outQuad, ScanOptions options, ScanContext context) {
+        int status;
+        if (context == null) {
+            status = nativeImageScanIntoF(src.getNativePtr(), outQuad, options, 0);
+        } else {
+            synchronized (context) {
+                status = nativeImageScanIntoF(src.getNativePtr(), outQuad, options, context.getNativePtr());
             }
         }
-        Point[] outPoints = new Point[4];
-        nativeScan(srcBmp, outPoints, sImageDetector == null);
-        return outPoints;
+        return checkScanStatus(status, "Cannot scan the native image");
+    }
+
+    // native 扫描的返回值转换为是否在时间预算内完成；无法扫描时不会写入顶点，抛出异常而不是当作超时返回
+    private static boolean checkScanStatus(int status, String failedMessage) {
+        if (status == SCAN_FAILED) {
+            throw new IllegalStateException(failedMessage);
+        }
+        return status == SCAN_COMPLETED;
+    }
+
+    /**
+     * 批量扫描图片，每张图片扫描完成后立即通过 listener 回调结果
+     * 同时扫描的图片数为 CPU 核数，见 {@link #scanBatch(List, ScanOptions, Executor, int, BatchScan.Listener)}
+     * @param srcBmps 扫描图片
+     * @param options 扫描参数，为 null 时使用默认参数
+     * @param executor 执行扫描的线程池，需要至少能同时运行 CPU 核数个任务才能达到最大吞吐
+     * @param listener 结果回调，在扫描线程上执行
+     * @return 批量扫描任务，可用于取消或等待完成
+     */
+    public static BatchScan scanBatch(List<Bitmap> srcBmps, ScanOptions options, Executor executor,
+                                      BatchScan.Listener listener) {
+        return scanBatch(srcBmps, options, executor, BatchScan.getDefaultParallelism(), listener);
+    }
+
+    /**
+     * 批量扫描图片，每张图片扫描完成后立即通过 listener 回调结果
+     * 每个并发任务持有一个 {@link ScanContext}，依次领取下一张图片，批处理期间复用中间缓冲；
+     * 剩余的 CPU 核分给单张图片内的 native 并行计算，两者相乘不超过核数，避免线程过多互相抢占
+     * @param parallelism 同时扫描的图片数，即提交到 executor 的任务数
+     * @see #scanBatch(List, ScanOptions, Executor, BatchScan.Listener)
+     */
+    public static BatchScan scanBatch(List<Bitmap> srcBmps, ScanOptions options, Executor executor, int parallelism,
+                                      BatchScan.Listener listener) {
+        if (srcBmps == null) {
+            throw new IllegalArgumentException("srcBmps cannot be null");
+        }
+        return BatchScan.start(srcBmps, 0, options, executor, parallelism, listener);
+    }
+
+    /**
+     * 批量扫描图片文件，图片按 {@link #decode(String, int, boolean)} 解码到 native 内存，
+     * HED 引擎等需要 Bitmap 输入的引擎才转换为 Bitmap，回调的顶点为原图坐标
+     * @param paths 图片路径
+     * @param maxDim 解码的最大边长，扫描在缩小到 500px 的图像上进行，默认引擎下 1024 即可
+     * @see #scanBatch(List, ScanOptions, Executor, BatchScan.Listener)
+     */
+    public static BatchScan scanFileBatch(List<String> paths, int maxDim, ScanOptions options, Executor executor,
+                                          BatchScan.Listener listener) {
+        return scanFileBatch(paths, maxDim, options, executor, BatchScan.getDefaultParallelism(), listener);
+    }
+
+    /**
+     * 批量扫描图片文件
+     * @param parallelism 同时扫描的图片数，即提交到 executor 的任务数
+     * @see #scanFileBatch(List, int, ScanOptions, Executor, BatchScan.Listener)
+     * @see #scanBatch(List, ScanOptions, Executor, int, BatchScan.Listener)
+     */
+    public static BatchScan scanFileBatch(List<String> paths, int maxDim, ScanOptions options, Executor executor,
+                                          int parallelism, BatchScan.Listener listener) {
+        if (paths == null) {
+            throw new IllegalArgumentException("paths cannot be null");
+        }
+        return BatchScan.start(paths, maxDim, options, executor, parallelism, listener);
+    }
+
+    /**
+     * 直接扫描相机 YUV_420_888 帧（如 CameraX ImageProxy）的 Y 平面，不做颜色转换，也不需要 Bitmap
+     * 只使用 Canny 边缘检测，不经过 HED 模型
+     * @param yBuffer Y 平面的 direct ByteBuffer，即 image.getPlanes()[0].getBuffer()
+     * @param rowStride Y 平面的行跨度
+     * @param width 帧宽度
+     * @param height 帧高度
+     * @param rotation 帧需要顺时针旋转的角度（0, 90, 180, 270），返回的顶点为旋转后的坐标
+     * @return 返回顶点数组，以 左上，右上，右下，左下排序
+     */
+    public static Point[] scanYuv(ByteBuffer yBuffer, int rowStride, int width, int height, int rotation) {
+        int[] quad = new int[8];
+        scanYuv(yBuffer, rowStride, width, height, rotation, quad);
+        return toPoints(quad);
+    }
+
+    /**
+     * 直接扫描相机 YUV_420_888 帧的 Y 平面，结果写入调用方提供的数组，逐帧调用时不产生 Java 堆分配
+     * @param outQuad 长度至少为 8，按 左上，右上，右下，左下 依次写入 x, y
+     * @see #scanYuv(ByteBuffer, int, int, int, int)
+     */
+    public static void scanYuv(ByteBuffer yBuffer, int rowStride, int width, int height, int rotation, int[] outQuad) {
+        scanYuv(yBuffer, rowStride, width, height, rotation, outQuad, null);
+    }
+
+    /**
+     * 直接扫描相机 YUV_420_888 帧的 Y 平面，结果写入调用方提供的数组
+     * @param options 扫描参数，为 null 时使用默认参数，实时预览可通过 {@link ScanOptions#withBudget(int)} 限制每帧耗时
+     * @return 在时间预算内完成搜索时返回 true；超出 {@link ScanOptions#withBudget(int)} 的预算提前结束时返回 false，
+     *         此时顶点为已找到的最佳结果，未找到时为整张图片
+     * @see #scanYuv(ByteBuffer, int, int, int, int, int[])
+     */
+    public static boolean scanYuv(ByteBuffer yBuffer, int rowStride, int width, int height, int rotation, int[] outQuad,
+                                  ScanOptions options) {
+        return scanYuv(yBuffer, rowStride, width, height, rotation, outQuad, options, null);
+    }
+
+    /**
+     * 直接扫描相机 YUV_420_888 帧的 Y 平面，中间缓冲复用 context 中已分配的内存，
+     * 分辨率不变的连续帧在 native 层不再重新分配扫描缓冲
+     * @param context 扫描上下文，为 null 时每次扫描临时分配
+     * @see #scanYuv(ByteBuffer, int, int, int, int, int[], ScanOptions)
+     */
+    public static boolean scanYuv(ByteBuffer yBuffer, int rowStride, int width, int height, int rotation, int[] outQuad,
+                                  ScanOptions options, ScanContext context) {
+        if (yBuffer == null || !yBuffer.isDirect()) {
+            throw new IllegalArgumentException("yBuffer must be a direct ByteBuffer");
+        }
+        if (width <= 0 || height <= 0 || rowStride < width) {
+            throw new IllegalArgumentException("invalid frame size " + width + "x" + height + ", rowStride " + rowStride);
+        }
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("rotation must be 0, 90, 180 or 270");
+        }
+        if (outQuad == null || outQuad.length < 8) {
+            throw new IllegalArgumentException("The length of outQuad must be at least 8");
+        }
+        if (context != null) {
+            synchronized (context) {
+                return nativeScanYuv(yBuffer, rowStride, width, height, rotation, outQuad, options,
+                        context.getNativePtr());
+            }
+        }
+        return nativeScanYuv(yBuffer, rowStride, width, height, rotation, outQuad, options, 0);
+    }
+
+    /**
+     * 输入图像扫描边框顶点，单通道图像直接扫描，不做颜色转换
+     * 适合配合 {@link #decode(String, int)} 在缩小后的图像上扫描，再按比例换算到原图
+     * @param src 扫描图像
+     * @return 返回顶点数组，以 左上，右上，右下，左下排序
+     */
+    public static Point[] scan(NativeImage src) {
+        return scan(src, null);
+    }
+
+    /**
+     * 输入图像扫描边框顶点
+     * @param src 扫描图像
+     * @param options 扫描参数，为 null 时使用默认参数
+     * @return 返回顶点数组，以 左上，右上，右下，左下排序，找不到边框时为整张图片
+     */
+    public static Point[] scan(NativeImage src, ScanOptions options) {
+        checkImage(src);
+        ScanEngine engine = getScanEngine(options);
+        if (engine != ScanEngines.CONTOUR && engine != ScanEngines.LINES) {
+            // HED 模型和自定义引擎需要 Bitmap 输入
+            Bitmap bitmap = src.toBitmap();
+            try {
+                return scan(bitmap, options);
+            } finally {
+                sBitmapPool.put(bitmap);
+            }
+        }
+        int[] quad = new int[8];
+        if (!nativeImageScan(src.getNativePtr(), quad, options)) {
+            // 与 scan(Bitmap) 一致，找不到边框时返回整张图片
+            int width = src.getWidth();
+            int height = src.getHeight();
+            quad = new int[] {0, 0, width, 0, width, height, 0, height};
+        }
+        return toPoints(quad);
+    }
+
+    /**
+     * 解码图片文件到 native 内存，JPEG 不经过 Bitmap
+     * JPEG 会利用 libjpeg-turbo 的 DCT 缩放（1/2、1/4、1/8）直接以接近目标的尺寸解码，不生成原尺寸的中间图像；
+     * 其他格式由 BitmapFactory 按相同比例采样解码后拷贝到 native 内存
+     * 与 BitmapFactory 一致，不按 EXIF 方向旋转
+     * @param path 图片路径
+     * @param maxDim 解码结果的最大边长，小于等于 0 时按原尺寸解码
+     * @return RGBA 图像，解码失败时返回 null
+     */
+    public static NativeImage decode(String path, int maxDim) {
+        return decode(path, maxDim, false);
+    }
+
+    /**
+     * 解码图片文件到 native 内存，JPEG 不经过 Bitmap
+     * @param path 图片路径
+     * @param maxDim 解码结果的最大边长，小于等于 0 时按原尺寸解码
+     * @param grayscale 为 true 时直接解码为单通道灰度图像，适合只用于扫描的场景
+     * @return RGBA 或单通道图像，解码失败时返回 null
+     * @see #decode(String, int)
+     */
+    public static NativeImage decode(String path, int maxDim, boolean grayscale) {
+        if (path == null) {
+            throw new IllegalArgumentException("path cannot be null");
+        }
+        // 只读取文件头获取尺寸和格式
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int reduceFactor = 1;
+        if (maxDim > 0) {
+            int maxSize = Math.max(options.outWidth, options.outHeight);
+            // 选择缩小后仍不小于 maxDim 的最大缩放比例
+            while (reduceFactor < 8 && maxSize / (reduceFactor * 2) >= maxDim) {
+                reduceFactor *= 2;
+            }
+        }
+        if (!"image/jpeg".equals(options.outMimeType)) {
+            return decodeWithBitmapFactory(path, reduceFactor, maxDim, grayscale);
+        }
+        long nativePtr = nativeDecode(path, reduceFactor, maxDim, grayscale);
+        return nativePtr == 0 ? null : new NativeImage(nativePtr);
+    }
+
+    // native 解码只支持 JPEG，其他格式用 inSampleSize 按相同比例采样解码
+    private static NativeImage decodeWithBitmapFactory(String path, int reduceFactor, int maxDim, boolean grayscale) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = reduceFactor;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+        if (bitmap == null) {
+            return null;
+        }
+        int maxSize = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (maxDim > 0 && maxSize > maxDim) {
+            float scale = (float) maxDim / maxSize;
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                    Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+        }
+        NativeImage image;
+        try {
+            image = NativeImage.fromBitmap(bitmap);
+        } finally {
+            bitmap.recycle();
+        }
+        if (!grayscale) {
+            return image;
+        }
+        try {
+            return convertToGrayscale(image);
+        } finally {
+            image.close();
+        }
     }
 
     /**
@@ -56,6 +530,78 @@ public class SmartCropper {
      * @return 返回裁剪后的图片
      */
     public static Bitmap crop(Bitmap srcBmp, Point[] cropPoints) {
+        cropPoints = sortCropPoints(srcBmp, cropPoints);
+        Point leftTop = cropPoints[0];
+        Point rightTop = cropPoints[1];
+        Point rightBottom = cropPoints[2];
+        Point leftBottom = cropPoints[3];
+
+        int cropWidth = (int) ((CropUtils.getPointsDistance(leftTop, rightTop)
+                + CropUtils.getPointsDistance(leftBottom, rightBottom))/2);
+        int cropHeight = (int) ((CropUtils.getPointsDistance(leftTop, leftBottom)
+                + CropUtils.getPointsDistance(rightTop, rightBottom))/2);
+
+        Bitmap cropBitmap = sBitmapPool.get(cropWidth, cropHeight, Bitmap.Config.ARGB_8888);
+        SmartCropper.nativeCrop(srcBmp, cropPoints, cropBitmap);
+        return cropBitmap;
+    }
+
+    /**
+     * 裁剪图片，结果写入调用方提供的 Bitmap，裁剪区域会拉伸到 outBmp 的尺寸
+     * @param srcBmp 待裁剪图片
+     * @param cropPoints 裁剪区域顶点，顶点坐标以图片大小为准
+     * @param outBmp 输出图片，需可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565
+     */
+    public static void crop(Bitmap srcBmp, Point[] cropPoints, Bitmap outBmp) {
+        cropPoints = sortCropPoints(srcBmp, cropPoints);
+        if (outBmp == null || outBmp.isRecycled()) {
+            throw new IllegalArgumentException("outBmp cannot be null or recycled");
+        }
+        checkOutBitmap(outBmp, outBmp.getWidth(), outBmp.getHeight());
+        SmartCropper.nativeCrop(srcBmp, cropPoints, outBmp);
+    }
+
+    /**
+     * 裁剪图片，顶点以 int 数组传入，结果写入调用方提供的 Bitmap，不产生 Java 堆分配
+     * @param srcBmp 待裁剪图片
+     * @param quad 裁剪区域顶点，长度至少为 8，按 x0, y0, x1, y1 ... 排列，顺序同 {@link #crop(Bitmap, Point[])}
+     * @param outBmp 输出图片，需可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565
+     */
+    public static void crop(Bitmap srcBmp, int[] quad, Bitmap outBmp) {
+        if (srcBmp == null || quad == null) {
+            throw new IllegalArgumentException("srcBmp and quad cannot be null");
+        }
+        if (quad.length < 8) {
+            throw new IllegalArgumentException("The length of quad must be at least 8 , and sort by leftTop, rightTop, rightBottom, leftBottom");
+        }
+        if (outBmp == null || outBmp.isRecycled()) {
+            throw new IllegalArgumentException("outBmp cannot be null or recycled");
+        }
+        checkOutBitmap(outBmp, outBmp.getWidth(), outBmp.getHeight());
+        nativeCropQuad(srcBmp, quad, outBmp);
+    }
+
+    /**
+     * 使用亚像素顶点裁剪图片，结果写入调用方提供的 Bitmap，裁剪区域会拉伸到 outBmp 的尺寸
+     * @param srcBmp 待裁剪图片
+     * @param quad 裁剪区域顶点，长度至少为 8，如 {@link #scanInto(Bitmap, float[], ScanOptions)} 的结果
+     * @param outBmp 输出图片，需可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565
+     */
+    public static void crop(Bitmap srcBmp, float[] quad, Bitmap outBmp) {
+        if (srcBmp == null || quad == null) {
+            throw new IllegalArgumentException("srcBmp and quad cannot be null");
+        }
+        if (quad.length < 8) {
+            throw new IllegalArgumentException("The length of quad must be at least 8 , and sort by leftTop, rightTop, rightBottom, leftBottom");
+        }
+        if (outBmp == null || outBmp.isRecycled()) {
+            throw new IllegalArgumentException("outBmp cannot be null or recycled");
+        }
+        checkOutBitmap(outBmp, outBmp.getWidth(), outBmp.getHeight());
+        nativeCropQuadF(srcBmp, quad, outBmp);
+    }
+
+    private static Point[] sortCropPoints(Bitmap srcBmp, Point[] cropPoints) {
         if (srcBmp == null || cropPoints == null) {
             throw new IllegalArgumentException("srcBmp and cropPoints cannot be null");
         }
@@ -81,20 +627,104 @@ public class SmartCropper {
             }
             cropPoints = resultCropPoint.clone();
         }
+        return cropPoints;
+    }
 
-        Point leftTop = cropPoints[0];
-        Point rightTop = cropPoints[1];
-        Point rightBottom = cropPoints[2];
-        Point leftBottom = cropPoints[3];
+    /**
+     * 使用 native libjpeg-turbo 编码 JPEG 并写入文件描述符，不经过 Bitmap.compress
+     * ALPHA_8 图片直接编码为灰度 JPEG
+     * @param srcBmp 待编码图片
+     * @param fd 可写的文件描述符
+     * @param options 编码参数，为 null 时使用默认参数
+     * @throws IOException 编码或写入失败
+     */
+    public static void encodeJpeg(Bitmap srcBmp, FileDescriptor fd, EncodeOptions options) throws IOException {
+        if (srcBmp == null || fd == null) {
+            throw new IllegalArgumentException("srcBmp and fd cannot be null");
+        }
+        EncodeOptions opts = options != null ? options : new EncodeOptions();
+        if (!nativeEncodeJpeg(srcBmp, fd, opts.quality, opts.chromaQuality, opts.chromaSubsampling,
+                opts.progressive, opts.optimize, opts.grayscale)) {
+            throw new IOException("encode jpeg failed");
+        }
+    }
 
-        int cropWidth = (int) ((CropUtils.getPointsDistance(leftTop, rightTop)
-                + CropUtils.getPointsDistance(leftBottom, rightBottom))/2);
-        int cropHeight = (int) ((CropUtils.getPointsDistance(leftTop, leftBottom)
-                + CropUtils.getPointsDistance(rightTop, rightBottom))/2);
+    /**
+     * 使用 native libjpeg-turbo 编码 JPEG 并写入文件
+     * @see #encodeJpeg(Bitmap, FileDescriptor, EncodeOptions)
+     */
+    public static void encodeJpeg(Bitmap srcBmp, String path, EncodeOptions options) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("path cannot be null");
+        }
+        try (FileOutputStream out = new FileOutputStream(path)) {
+            encodeJpeg(srcBmp, out.getFD(), options);
+        }
+    }
 
-        Bitmap cropBitmap = Bitmap.createBitmap(cropWidth, cropHeight, Bitmap.Config.ARGB_8888);
-        SmartCropper.nativeCrop(srcBmp, cropPoints, cropBitmap);
-        return cropBitmap;
+    /**
+     * 使用 native libjpeg-turbo 编码 JPEG 并写入文件描述符，单通道图像直接编码为灰度 JPEG
+     * @param src 待编码图像
+     * @param fd 可写的文件描述符
+     * @param options 编码参数，为 null 时使用默认参数
+     * @throws IOException 编码或写入失败
+     */
+    public static void encodeJpeg(NativeImage src, FileDescriptor fd, EncodeOptions options) throws IOException {
+        checkImage(src);
+        if (fd == null) {
+            throw new IllegalArgumentException("fd cannot be null");
+        }
+        EncodeOptions opts = options != null ? options : new EncodeOptions();
+        if (!nativeImageEncodeJpeg(src.getNativePtr(), fd, opts.quality, opts.chromaQuality, opts.chromaSubsampling,
+                opts.progressive, opts.optimize, opts.grayscale)) {
+            throw new IOException("encode jpeg failed");
+        }
+    }
+
+    /**
+     * 使用 native libjpeg-turbo 编码 JPEG 并写入文件
+     * @see #encodeJpeg(NativeImage, FileDescriptor, EncodeOptions)
+     */
+    public static void encodeJpeg(NativeImage src, String path, EncodeOptions options) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("path cannot be null");
+        }
+        try (FileOutputStream out = new FileOutputStream(path)) {
+            encodeJpeg(src, out.getFD(), options);
+        }
+    }
+
+    /**
+     * 文件到文件的一次性处理：解码 -> 边缘检测 -> 裁剪矫正 -> 按模式处理 -> JPEG 编码
+     * 输入需为 JPEG，以内存映射方式解码，边缘检测在按 DCT 缩放解码的灰度图上进行，透视变换使用原尺寸图像，
+     * 全部在 native 内存中完成，不生成任何 Bitmap，适合批量处理
+     * 边缘检测只使用 Canny，不经过 HED 模型；与 BitmapFactory 一致，不按 EXIF 方向旋转
+     * 扫描参数开启 {@link ScanOptions#setRefine(boolean)} 时，顶点先在扫描图上、再在原尺寸图像上细化后用于透视变换
+     * @param input 输入图片的文件描述符，需可读且支持 mmap（普通文件）
+     * @param output 输出 JPEG 的文件描述符，不能与 input 指向同一文件
+     * @param options 处理参数，为 null 时使用默认参数
+     * @return 顶点、输出尺寸和各阶段耗时
+     * @throws IOException 输入不是 JPEG，或解码、处理或写入失败
+     */
+    public static ProcessResult processFile(FileDescriptor input, FileDescriptor output, ProcessOptions options) throws IOException {
+        if (input == null || output == null) {
+            throw new IllegalArgumentException("input and output cannot be null");
+        }
+        ProcessOptions opts = options != null ? options : new ProcessOptions();
+        int op = -1;
+        if (opts.mode != ProcessOptions.MODE_NONE) {
+            op = opts.qualityOptimization ? OP_QUALITY_OPTIMIZED : OP_DOCUMENT_MODE;
+        }
+        EncodeOptions encode = opts.encodeOptions;
+        int[] quad = new int[8];
+        int[] size = new int[2];
+        long[] timings = new long[ProcessResult.TIMING_COUNT];
+        if (!nativeProcessFile(input, output, opts.scanMaxDim, opts.scanOptions, op, opts.mode, encode.quality,
+                encode.chromaQuality, encode.chromaSubsampling, encode.progressive, encode.optimize, encode.grayscale,
+                quad, size, timings)) {
+            throw new IOException("process file failed");
+        }
+        return new ProcessResult(quad, size, timings);
     }
 
     /**
@@ -111,81 +741,168 @@ public class SmartCropper {
     }
 
     /**
-     * 完整的文档处理流程：灰度图 -> 降噪 -> 加强对比度 -> 二值化
+     * 完整的文档处理流程：灰度图 -> 降噪 -> 加强对比度 -> 二值化
+     * @param srcBmp 原始图片
+     * @return 处理后的文档图片
+     */
+    public static Bitmap processDocument(Bitmap srcBmp) {
+        return processBitmap(srcBmp, OP_DOCUMENT, 0, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 完整的文档处理流程，中间结果保留在 native 内存中
+     * @param src 原始图像
+     * @return 处理后的文档图像（单通道）
+     */
+    public static NativeImage processDocument(NativeImage src) {
+        return processImage(src, OP_DOCUMENT, 0);
+    }
+
+    /**
+     * 转换为灰度图
+     * @param srcBmp 原始图片
+     * @return 灰度图
+     */
+    public static Bitmap convertToGrayscale(Bitmap srcBmp) {
+        return processBitmap(srcBmp, OP_GRAYSCALE, 0, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 转换为灰度图，结果写入调用方提供的 Bitmap
+     * @param srcBmp 原始图片
+     * @param outBmp 输出图片，尺寸需与原图一致且可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565，可与 srcBmp 相同
+     */
+    public static void convertToGrayscale(Bitmap srcBmp, Bitmap outBmp) {
+        processBitmap(srcBmp, outBmp, OP_GRAYSCALE, 0);
+    }
+
+    /**
+     * 转换为灰度图
+     * @param srcBmp 原始图片
+     * @param outConfig 输出格式，ALPHA_8 时输出单通道 Bitmap，内存仅为 ARGB_8888 的 1/4
+     * @return 灰度图
+     */
+    public static Bitmap convertToGrayscale(Bitmap srcBmp, Bitmap.Config outConfig) {
+        if (outConfig == Bitmap.Config.ALPHA_8) {
+            return processBitmap(srcBmp, OP_GRAYSCALE, 0, Bitmap.Config.ALPHA_8);
+        }
+        return convertToGrayscale(srcBmp);
+    }
+
+    /**
+     * 转换为灰度图
+     * @param src 原始图像
+     * @return 灰度图（单通道）
+     */
+    public static NativeImage convertToGrayscale(NativeImage src) {
+        return processImage(src, OP_GRAYSCALE, 0);
+    }
+
+    /**
+     * 图像降噪处理
+     * @param srcBmp 原始图片
+     * @return 降噪后的图片
+     */
+    public static Bitmap denoiseImage(Bitmap srcBmp) {
+        return processBitmap(srcBmp, OP_DENOISE, 0, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 图像降噪处理，结果写入调用方提供的 Bitmap
+     * @param srcBmp 原始图片
+     * @param outBmp 输出图片，尺寸需与原图一致且可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565，可与 srcBmp 相同
+     */
+    public static void denoiseImage(Bitmap srcBmp, Bitmap outBmp) {
+        processBitmap(srcBmp, outBmp, OP_DENOISE, 0);
+    }
+
+    /**
+     * 图像降噪处理
+     * @param src 原始图像
+     * @return 降噪后的图像
+     */
+    public static NativeImage denoiseImage(NativeImage src) {
+        return processImage(src, OP_DENOISE, 0);
+    }
+
+    /**
+     * 增强图像对比度
+     * @param srcBmp 原始图片
+     * @return 对比度增强后的图片
+     */
+    public static Bitmap enhanceContrast(Bitmap srcBmp) {
+        return processBitmap(srcBmp, OP_ENHANCE_CONTRAST, 0, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 增强图像对比度，结果写入调用方提供的 Bitmap
      * @param srcBmp 原始图片
-     * @return 处理后的文档图片
+     * @param outBmp 输出图片，尺寸需与原图一致且可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565，可与 srcBmp 相同
      */
-    public static Bitmap processDocument(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
-
-        // 步骤1：转换为灰度图
-        Bitmap grayBitmap = convertToGrayscale(srcBmp);
-        
-        // 步骤2：降噪处理
-        Bitmap denoisedBitmap = denoiseImage(grayBitmap);
-        
-        // 步骤3：加强对比度
-        Bitmap contrastBitmap = enhanceContrast(denoisedBitmap);
-        
-        // 步骤4：二值化处理
-        Bitmap binaryBitmap = binarizeImage(contrastBitmap);
-        
-        // 清理中间结果
-        if (grayBitmap != denoisedBitmap) grayBitmap.recycle();
-        if (denoisedBitmap != contrastBitmap) denoisedBitmap.recycle();
-        if (contrastBitmap != binaryBitmap) contrastBitmap.recycle();
-        
-        return binaryBitmap;
+    public static void enhanceContrast(Bitmap srcBmp, Bitmap outBmp) {
+        processBitmap(srcBmp, outBmp, OP_ENHANCE_CONTRAST, 0);
     }
 
     /**
-     * 转换为灰度图
+     * 增强图像对比度
      * @param srcBmp 原始图片
-     * @return 灰度图
+     * @param outConfig 输出格式，ALPHA_8 时输出单通道 Bitmap（彩色结果会转换为灰度）
+     * @return 对比度增强后的图片
      */
-    public static Bitmap convertToGrayscale(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
+    public static Bitmap enhanceContrast(Bitmap srcBmp, Bitmap.Config outConfig) {
+        if (outConfig == Bitmap.Config.ALPHA_8) {
+            return processBitmap(srcBmp, OP_ENHANCE_CONTRAST, 0, Bitmap.Config.ALPHA_8);
         }
-        return nativeConvertToGrayscale(srcBmp);
+        return enhanceContrast(srcBmp);
     }
 
     /**
-     * 图像降噪处理
+     * 增强图像对比度
+     * @param src 原始图像
+     * @return 对比度增强后的图像
+     */
+    public static NativeImage enhanceContrast(NativeImage src) {
+        return processImage(src, OP_ENHANCE_CONTRAST, 0);
+    }
+
+    /**
+     * 图像二值化处理
      * @param srcBmp 原始图片
-     * @return 降噪后的图片
+     * @return 二值化后的图片
      */
-    public static Bitmap denoiseImage(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
-        return nativeDenoiseImage(srcBmp);
+    public static Bitmap binarizeImage(Bitmap srcBmp) {
+        return processBitmap(srcBmp, OP_BINARIZE, 0, Bitmap.Config.ARGB_8888);
     }
 
     /**
-     * 增强图像对比度
+     * 图像二值化处理，结果写入调用方提供的 Bitmap
      * @param srcBmp 原始图片
-     * @return 对比度增强后的图片
+     * @param outBmp 输出图片，尺寸需与原图一致且可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565，可与 srcBmp 相同
      */
-    public static Bitmap enhanceContrast(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
-        return nativeEnhanceContrast(srcBmp);
+    public static void binarizeImage(Bitmap srcBmp, Bitmap outBmp) {
+        processBitmap(srcBmp, outBmp, OP_BINARIZE, 0);
     }
 
     /**
      * 图像二值化处理
      * @param srcBmp 原始图片
+     * @param outConfig 输出格式，ALPHA_8 时输出单通道 Bitmap
      * @return 二值化后的图片
      */
-    public static Bitmap binarizeImage(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
+    public static Bitmap binarizeImage(Bitmap srcBmp, Bitmap.Config outConfig) {
+        if (outConfig == Bitmap.Config.ALPHA_8) {
+            return processBitmap(srcBmp, OP_BINARIZE, 0, Bitmap.Config.ALPHA_8);
         }
-        return nativeBinarizeImage(srcBmp);
+        return binarizeImage(srcBmp);
+    }
+
+    /**
+     * 图像二值化处理
+     * @param src 原始图像
+     * @return 二值化后的图像（单通道）
+     */
+    public static NativeImage binarizeImage(NativeImage src) {
+        return processImage(src, OP_BINARIZE, 0);
     }
 
     /**
@@ -194,10 +911,25 @@ public class SmartCropper {
      * @return 处理后的图片
      */
     public static Bitmap advancedDocumentProcess(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
-        return nativeAdvancedDocumentProcess(srcBmp);
+        return processBitmap(srcBmp, OP_ADVANCED_DOCUMENT, 0, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 高级文档处理：包含形态学操作和GrabCut背景分离，结果写入调用方提供的 Bitmap
+     * @param srcBmp 原始图片
+     * @param outBmp 输出图片，尺寸需与原图一致且可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565，可与 srcBmp 相同
+     */
+    public static void advancedDocumentProcess(Bitmap srcBmp, Bitmap outBmp) {
+        processBitmap(srcBmp, outBmp, OP_ADVANCED_DOCUMENT, 0);
+    }
+
+    /**
+     * 高级文档处理：包含形态学操作和GrabCut背景分离
+     * @param src 原始图像
+     * @return 处理后的图像
+     */
+    public static NativeImage advancedDocumentProcess(NativeImage src) {
+        return processImage(src, OP_ADVANCED_DOCUMENT, 0);
     }
 
     /**
@@ -207,10 +939,41 @@ public class SmartCropper {
      * @return 二值化后的图片
      */
     public static Bitmap smartBinarize(Bitmap srcBmp, int method) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
+        return processBitmap(srcBmp, OP_SMART_BINARIZE, method, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 智能二值化，结果写入调用方提供的 Bitmap
+     * @param srcBmp 原始图片
+     * @param method 二值化方法 (0:自适应高斯阈值, 1:自适应均值阈值, 2:Otsu自动阈值, 3:组合方法)
+     * @param outBmp 输出图片，尺寸需与原图一致且可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565，可与 srcBmp 相同
+     */
+    public static void smartBinarize(Bitmap srcBmp, int method, Bitmap outBmp) {
+        processBitmap(srcBmp, outBmp, OP_SMART_BINARIZE, method);
+    }
+
+    /**
+     * 智能二值化：支持多种算法
+     * @param srcBmp 原始图片
+     * @param method 二值化方法 (0:自适应高斯阈值, 1:自适应均值阈值, 2:Otsu自动阈值, 3:组合方法)
+     * @param outConfig 输出格式，ALPHA_8 时输出单通道 Bitmap
+     * @return 二值化后的图片
+     */
+    public static Bitmap smartBinarize(Bitmap srcBmp, int method, Bitmap.Config outConfig) {
+        if (outConfig == Bitmap.Config.ALPHA_8) {
+            return processBitmap(srcBmp, OP_SMART_BINARIZE, method, Bitmap.Config.ALPHA_8);
         }
-        return nativeSmartBinarize(srcBmp, method);
+        return smartBinarize(srcBmp, method);
+    }
+
+    /**
+     * 智能二值化：支持多种算法
+     * @param src 原始图像
+     * @param method 二值化方法 (0:自适应高斯阈值, 1:自适应均值阈值, 2:Otsu自动阈值, 3:组合方法)
+     * @return 二值化后的图像（单通道）
+     */
+    public static NativeImage smartBinarize(NativeImage src, int method) {
+        return processImage(src, OP_SMART_BINARIZE, method);
     }
 
     /**
@@ -219,10 +982,25 @@ public class SmartCropper {
      * @return 降噪后的图片
      */
     public static Bitmap advancedDenoise(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
-        return nativeAdvancedDenoise(srcBmp);
+        return processBitmap(srcBmp, OP_ADVANCED_DENOISE, 0, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 高级降噪：Non-local Means Denoising，结果写入调用方提供的 Bitmap
+     * @param srcBmp 原始图片
+     * @param outBmp 输出图片，尺寸需与原图一致且可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565，可与 srcBmp 相同
+     */
+    public static void advancedDenoise(Bitmap srcBmp, Bitmap outBmp) {
+        processBitmap(srcBmp, outBmp, OP_ADVANCED_DENOISE, 0);
+    }
+
+    /**
+     * 高级降噪：Non-local Means Denoising
+     * @param src 原始图像
+     * @return 降噪后的图像
+     */
+    public static NativeImage advancedDenoise(NativeImage src) {
+        return processImage(src, OP_ADVANCED_DENOISE, 0);
     }
 
     /**
@@ -232,32 +1010,17 @@ public class SmartCropper {
      * @return 处理后的文档图片
      */
     public static Bitmap processAdvancedDocument(Bitmap srcBmp, int binarizeMethod) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
+        return processBitmap(srcBmp, OP_ADVANCED_PIPELINE, binarizeMethod, Bitmap.Config.ARGB_8888);
+    }
 
-        // 步骤1：高级文档处理（形态学操作+GrabCut）
-        Bitmap processedBitmap = advancedDocumentProcess(srcBmp);
-        
-        // 步骤2：转换为灰度图
-        Bitmap grayBitmap = convertToGrayscale(processedBitmap);
-        
-        // 步骤3：高级降噪
-        Bitmap denoisedBitmap = advancedDenoise(grayBitmap);
-        
-        // 步骤4：增强对比度
-        Bitmap contrastBitmap = enhanceContrast(denoisedBitmap);
-        
-        // 步骤5：智能二值化
-        Bitmap binaryBitmap = smartBinarize(contrastBitmap, binarizeMethod);
-        
-        // 清理中间结果
-        if (processedBitmap != grayBitmap) processedBitmap.recycle();
-        if (grayBitmap != denoisedBitmap) grayBitmap.recycle();
-        if (denoisedBitmap != contrastBitmap) denoisedBitmap.recycle();
-        if (contrastBitmap != binaryBitmap) contrastBitmap.recycle();
-        
-        return binaryBitmap;
+    /**
+     * 完整的高级文档处理流程，中间结果保留在 native 内存中
+     * @param src 原始图像
+     * @param binarizeMethod 二值化方法
+     * @return 处理后的文档图像（单通道）
+     */
+    public static NativeImage processAdvancedDocument(NativeImage src, int binarizeMethod) {
+        return processImage(src, OP_ADVANCED_PIPELINE, binarizeMethod);
     }
 
     /**
@@ -276,33 +1039,14 @@ public class SmartCropper {
             
             // TODO: 这里可以进一步实现更复杂的质量评估算法
             // 比如：边缘检测密度、对比度分析、噪声等级等
-            
-            // 基础评分：根据图像尺寸和像素密度
-            int baseScore = 50;
-            
-            // 尺寸加分：大尺寸图像通常质量更好
-            int pixels = srcBmp.getWidth() * srcBmp.getHeight();
-            if (pixels > 2000000) { // 2MP+
-                baseScore += 25;
-            } else if (pixels > 1000000) { // 1MP+
-                baseScore += 15;
-            } else if (pixels > 500000) { // 0.5MP+
-                baseScore += 10;
-            }
-            
-            // 宽高比加分：文档的典型宽高比
-            float aspectRatio = (float) srcBmp.getWidth() / srcBmp.getHeight();
-            if (aspectRatio > 0.7f && aspectRatio < 1.5f) {
-                baseScore += 10; // 接近正方形或文档比例
-            }
+            int score = evaluateDocumentQuality(srcBmp.getWidth(), srcBmp.getHeight());
             
             // 清理临时图像
             if (grayBitmap != srcBmp) {
                 grayBitmap.recycle();
             }
             
-            // 确保分数在有效范围内
-            return Math.max(0, Math.min(100, baseScore));
+            return score;
             
         } catch (Exception e) {
             Log.e("SmartCropper", "Error evaluating document quality", e);
@@ -310,6 +1054,42 @@ public class SmartCropper {
         }
     }
 
+    /**
+     * 文档质量评估
+     * @param src 文档图像
+     * @return 质量分数 (0-100, 越高越好)
+     */
+    public static int evaluateDocumentQuality(NativeImage src) {
+        if (src == null || src.isClosed()) {
+            return 0;
+        }
+        return evaluateDocumentQuality(src.getWidth(), src.getHeight());
+    }
+
+    private static int evaluateDocumentQuality(int width, int height) {
+        // 基础评分：根据图像尺寸和像素密度
+        int baseScore = 50;
+        
+        // 尺寸加分：大尺寸图像通常质量更好
+        int pixels = width * height;
+        if (pixels > 2000000) { // 2MP+
+            baseScore += 25;
+        } else if (pixels > 1000000) { // 1MP+
+            baseScore += 15;
+        } else if (pixels > 500000) { // 0.5MP+
+            baseScore += 10;
+        }
+        
+        // 宽高比加分：文档的典型宽高比
+        float aspectRatio = (float) width / height;
+        if (aspectRatio > 0.7f && aspectRatio < 1.5f) {
+            baseScore += 10; // 接近正方形或文档比例
+        }
+        
+        // 确保分数在有效范围内
+        return Math.max(0, Math.min(100, baseScore));
+    }
+
     /**
      * 根据文档质量自动调整处理参数
      * @param srcBmp 文档图片
@@ -317,89 +1097,28 @@ public class SmartCropper {
      * @return 优化处理后的文档图片
      */
     public static Bitmap processDocumentWithQualityOptimization(Bitmap srcBmp, int targetMode) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
-        
-        try {
-            // 评估文档质量
-            int quality = evaluateDocumentQuality(srcBmp);
-            Log.d("SmartCropper", "Document quality score: " + quality);
-            
-            // 根据质量调整处理策略
-            if (quality < 30) {
-                // 低质量：加强处理
-                return processLowQualityDocument(srcBmp, targetMode);
-            } else if (quality > 80) {
-                // 高质量：轻度处理
-                return processHighQualityDocument(srcBmp, targetMode);
-            } else {
-                // 中等质量：标准处理
-                return processDocumentByMode(srcBmp, targetMode);
-            }
-            
-        } catch (Exception e) {
-            Log.e("SmartCropper", "Error in quality optimization", e);
-            // 错误时使用标准处理
-            return processDocumentByMode(srcBmp, targetMode);
-        }
+        return processBitmap(srcBmp, OP_QUALITY_OPTIMIZED, targetMode, Bitmap.Config.ARGB_8888);
     }
 
     /**
-     * 低质量文档处理：加强降噪和对比度增强
+     * 根据文档质量自动调整处理参数
+     * @param srcBmp 文档图片
+     * @param targetMode 目标处理模式
+     * @param outConfig 输出格式，ALPHA_8 时输出单通道 Bitmap
+     * @return 优化处理后的文档图片
      */
-    private static Bitmap processLowQualityDocument(Bitmap srcBmp, int targetMode) {
-        // 低质量文档需要更强的处理
-        Bitmap processedBitmap = advancedDocumentProcess(srcBmp); // 背景分离
-        Bitmap denoisedBitmap = advancedDenoise(processedBitmap);   // 高级降噪
-        Bitmap grayBitmap = convertToGrayscale(denoisedBitmap);
-        
-        // 增强对比度处理（多次）
-        Bitmap contrastBitmap = enhanceContrast(grayBitmap);
-        Bitmap enhancedBitmap = enhanceContrast(contrastBitmap);
-        
-        // 使用组合二值化方法
-        Bitmap binaryBitmap = smartBinarize(enhancedBitmap, BinarizeMethod.COMBINED);
-        
-        // 清理中间结果
-        if (processedBitmap != denoisedBitmap) processedBitmap.recycle();
-        if (denoisedBitmap != grayBitmap) denoisedBitmap.recycle();
-        if (grayBitmap != contrastBitmap) grayBitmap.recycle();
-        if (contrastBitmap != enhancedBitmap) contrastBitmap.recycle();
-        if (enhancedBitmap != binaryBitmap) enhancedBitmap.recycle();
-        
-        return binaryBitmap;
+    public static Bitmap processDocumentWithQualityOptimization(Bitmap srcBmp, int targetMode, Bitmap.Config outConfig) {
+        return processBitmap(srcBmp, OP_QUALITY_OPTIMIZED, targetMode, outConfig);
     }
 
     /**
-     * 高质量文档处理：轻度处理保持细节
+     * 根据文档质量自动调整处理参数，中间结果保留在 native 内存中
+     * @param src 文档图像
+     * @param targetMode 目标处理模式
+     * @return 优化处理后的文档图像
      */
-    private static Bitmap processHighQualityDocument(Bitmap srcBmp, int targetMode) {
-        // 高质量文档使用轻度处理
-        Bitmap grayBitmap = convertToGrayscale(srcBmp);
-        Bitmap denoisedBitmap = denoiseImage(grayBitmap); // 使用轻度降噪
-        
-        // 根据模式选择二值化方法
-        int binarizeMethod;
-        switch (targetMode) {
-            case DocumentMode.OCR_OPTIMIZED:
-                binarizeMethod = BinarizeMethod.COMBINED;
-                break;
-            case DocumentMode.PRINTED_DOCUMENT:
-                binarizeMethod = BinarizeMethod.OTSU;
-                break;
-            default:
-                binarizeMethod = BinarizeMethod.ADAPTIVE_GAUSSIAN;
-                break;
-        }
-        
-        Bitmap binaryBitmap = smartBinarize(denoisedBitmap, binarizeMethod);
-        
-        // 清理中间结果
-        if (grayBitmap != denoisedBitmap) grayBitmap.recycle();
-        if (denoisedBitmap != binaryBitmap) denoisedBitmap.recycle();
-        
-        return binaryBitmap;
+    public static NativeImage processDocumentWithQualityOptimization(NativeImage src, int targetMode) {
+        return processImage(src, OP_QUALITY_OPTIMIZED, targetMode);
     }
 
     /**
@@ -433,22 +1152,38 @@ public class SmartCropper {
      * @return 处理后的文档图片
      */
     public static Bitmap processDocumentByMode(Bitmap srcBmp, int mode) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
+        return processBitmap(srcBmp, OP_DOCUMENT_MODE, mode, Bitmap.Config.ARGB_8888);
+    }
 
-        switch (mode) {
-            case DocumentMode.OCR_OPTIMIZED:
-                return processOCROptimizedDocument(srcBmp);
-            case DocumentMode.PRINTED_DOCUMENT:
-                return processPrintedDocument(srcBmp);
-            case DocumentMode.HANDWRITTEN_DOCUMENT:
-                return processHandwrittenDocument(srcBmp);
-            case DocumentMode.WHITEBOARD:
-                return processWhiteboardDocument(srcBmp);
-            default:
-                return processAdvancedDocument(srcBmp, BinarizeMethod.COMBINED);
-        }
+    /**
+     * 根据指定模式处理文档
+     * @param srcBmp 原始图片
+     * @param mode 文档处理模式
+     * @param outConfig 输出格式，ALPHA_8 时输出单通道 Bitmap
+     * @return 处理后的文档图片
+     */
+    public static Bitmap processDocumentByMode(Bitmap srcBmp, int mode, Bitmap.Config outConfig) {
+        return processBitmap(srcBmp, OP_DOCUMENT_MODE, mode, outConfig);
+    }
+
+    /**
+     * 根据指定模式处理文档，结果写入调用方提供的 Bitmap
+     * @param srcBmp 原始图片
+     * @param mode 文档处理模式
+     * @param outBmp 输出图片，尺寸需与原图一致且可修改，支持 ARGB_8888、ALPHA_8 和 RGB_565，可与 srcBmp 相同
+     */
+    public static void processDocumentByMode(Bitmap srcBmp, int mode, Bitmap outBmp) {
+        processBitmap(srcBmp, outBmp, OP_DOCUMENT_MODE, mode);
+    }
+
+    /**
+     * 根据指定模式处理文档，中间结果保留在 native 内存中
+     * @param src 原始图像
+     * @param mode 文档处理模式
+     * @return 处理后的文档图像（单通道）
+     */
+    public static NativeImage processDocumentByMode(NativeImage src, int mode) {
+        return processImage(src, OP_DOCUMENT_MODE, mode);
     }
 
     /**
@@ -457,24 +1192,16 @@ public class SmartCropper {
      * @return 处理后的文档图片
      */
     public static Bitmap processOCROptimizedDocument(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
+        return processBitmap(srcBmp, OP_DOCUMENT_MODE, DocumentMode.OCR_OPTIMIZED, Bitmap.Config.ARGB_8888);
+    }
 
-        // OCR优化流程：高级背景分离 -> 高级降噪 -> 灰度转换 -> 对比度增强 -> 组合二值化
-        Bitmap processedBitmap = advancedDocumentProcess(srcBmp);
-        Bitmap denoisedBitmap = advancedDenoise(processedBitmap);
-        Bitmap grayBitmap = convertToGrayscale(denoisedBitmap);
-        Bitmap contrastBitmap = enhanceContrast(grayBitmap);
-        Bitmap binaryBitmap = smartBinarize(contrastBitmap, BinarizeMethod.COMBINED);
-        
-        // 清理中间结果
-        if (processedBitmap != denoisedBitmap) processedBitmap.recycle();
-        if (denoisedBitmap != grayBitmap) denoisedBitmap.recycle();
-        if (grayBitmap != contrastBitmap) grayBitmap.recycle();
-        if (contrastBitmap != binaryBitmap) contrastBitmap.recycle();
-        
-        return binaryBitmap;
+    /**
+     * OCR优化模式，中间结果保留在 native 内存中
+     * @param src 原始图像
+     * @return 处理后的文档图像（单通道）
+     */
+    public static NativeImage processOCROptimizedDocument(NativeImage src) {
+        return processImage(src, OP_DOCUMENT_MODE, DocumentMode.OCR_OPTIMIZED);
     }
 
     /**
@@ -483,22 +1210,16 @@ public class SmartCropper {
      * @return 处理后的文档图片
      */
     public static Bitmap processPrintedDocument(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
+        return processBitmap(srcBmp, OP_DOCUMENT_MODE, DocumentMode.PRINTED_DOCUMENT, Bitmap.Config.ARGB_8888);
+    }
 
-        // 打印文档流程：灰度转换 -> 适度降噪 -> 对比度增强 -> Otsu二值化
-        Bitmap grayBitmap = convertToGrayscale(srcBmp);
-        Bitmap denoisedBitmap = denoiseImage(grayBitmap); // 使用较温和的降噪
-        Bitmap contrastBitmap = enhanceContrast(denoisedBitmap);
-        Bitmap binaryBitmap = smartBinarize(contrastBitmap, BinarizeMethod.OTSU);
-        
-        // 清理中间结果
-        if (grayBitmap != denoisedBitmap) grayBitmap.recycle();
-        if (denoisedBitmap != contrastBitmap) denoisedBitmap.recycle();
-        if (contrastBitmap != binaryBitmap) contrastBitmap.recycle();
-        
-        return binaryBitmap;
+    /**
+     * 打印文档模式，中间结果保留在 native 内存中
+     * @param src 原始图像
+     * @return 处理后的文档图像（单通道）
+     */
+    public static NativeImage processPrintedDocument(NativeImage src) {
+        return processImage(src, OP_DOCUMENT_MODE, DocumentMode.PRINTED_DOCUMENT);
     }
 
     /**
@@ -507,22 +1228,16 @@ public class SmartCropper {
      * @return 处理后的文档图片
      */
     public static Bitmap processHandwrittenDocument(Bitmap srcBmp) {
-        if (srcBmp == null) {
-            throw new IllegalArgumentException("srcBmp cannot be null");
-        }
+        return processBitmap(srcBmp, OP_DOCUMENT_MODE, DocumentMode.HANDWRITTEN_DOCUMENT, Bitmap.Config.ARGB_8888);
+    }
 
-        // 手写文档流程：灰度转换 -> 高级降噪 -> 轻微对比度增强 -> 自适应高斯二值化
-        Bitmap grayBitmap = convertToGrayscale(srcBmp);
-        Bitmap denoisedBitmap = advancedDenoise(grayBitmap); // 使用高级降噪保持细节
-        Bitmap contrastBitmap = enhanceContrast(denoisedBitmap);
-        Bitmap binaryBitmap = smartBinarize(contrastBitmap, BinarizeMethod.ADAPTIVE_GAUSSIAN);
-        
-        // 清理中间结果
-        if (grayBitmap != denoisedBitmap) grayBitmap.recycle();
-        if (denoisedBitmap != contrastBitmap) denoisedBitmap.recycle();
-        if (contrastBitmap != binaryBitmap) contrastBitmap.recycle();
-        
-        return binaryBitmap;
+    /**
+     * 手写文档模式，中间结果保留在 native 内存中
+     * @param src 原始图像
+     * @return 处理后的文档图像（单通道）
+     */
+    public static NativeImage processHandwrittenDocument(NativeImage src) {
+        return processImage(src, OP_DOCUMENT_MODE, DocumentMode.HANDWRITTEN_DOCUMENT);
     }
 
     /**
@@ -531,43 +1246,156 @@ public class SmartCropper {
      * @return 处理后的文档图片
      */
     public static Bitmap processWhiteboardDocument(Bitmap srcBmp) {
+        return processBitmap(srcBmp, OP_DOCUMENT_MODE, DocumentMode.WHITEBOARD, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 白板模式，中间结果保留在 native 内存中
+     * @param src 原始图像
+     * @return 处理后的文档图像（单通道）
+     */
+    public static NativeImage processWhiteboardDocument(NativeImage src) {
+        return processImage(src, OP_DOCUMENT_MODE, DocumentMode.WHITEBOARD);
+    }
+
+    private static void checkImage(NativeImage src) {
+        if (src == null || src.isClosed()) {
+            throw new IllegalArgumentException("src cannot be null or closed");
+        }
+    }
+
+    /**
+     * 校验输出图片：不能为空、未回收、可修改，且尺寸与输入一致
+     */
+    static void checkOutBitmap(Bitmap outBmp, int width, int height) {
+        if (outBmp == null || outBmp.isRecycled()) {
+            throw new IllegalArgumentException("outBmp cannot be null or recycled");
+        }
+        if (!outBmp.isMutable()) {
+            throw new IllegalArgumentException("outBmp must be mutable");
+        }
+        if (outBmp.getWidth() != width || outBmp.getHeight() != height) {
+            throw new IllegalArgumentException("outBmp size must be " + width + "x" + height);
+        }
+    }
+
+    private static Bitmap processBitmap(Bitmap srcBmp, int op, int arg, Bitmap.Config outConfig) {
         if (srcBmp == null) {
             throw new IllegalArgumentException("srcBmp cannot be null");
         }
+        Bitmap outBmp = sBitmapPool.get(srcBmp.getWidth(), srcBmp.getHeight(), outConfig);
+        nativeProcessInto(srcBmp, outBmp, op, arg);
+        return outBmp;
+    }
 
-        // 白板模式流程：背景分离 -> 灰度转换 -> 强对比度增强 -> 自适应均值二值化
-        Bitmap processedBitmap = advancedDocumentProcess(srcBmp); // 使用GrabCut去除背景
-        Bitmap grayBitmap = convertToGrayscale(processedBitmap);
-        Bitmap contrastBitmap = enhanceContrast(grayBitmap);
-        Bitmap binaryBitmap = smartBinarize(contrastBitmap, BinarizeMethod.ADAPTIVE_MEAN);
-        
-        // 清理中间结果
-        if (processedBitmap != grayBitmap) processedBitmap.recycle();
-        if (grayBitmap != contrastBitmap) grayBitmap.recycle();
-        if (contrastBitmap != binaryBitmap) contrastBitmap.recycle();
-        
-        return binaryBitmap;
+    private static void processBitmap(Bitmap srcBmp, Bitmap outBmp, int op, int arg) {
+        if (srcBmp == null) {
+            throw new IllegalArgumentException("srcBmp cannot be null");
+        }
+        checkOutBitmap(outBmp, srcBmp.getWidth(), srcBmp.getHeight());
+        nativeProcessInto(srcBmp, outBmp, op, arg);
+    }
+
+    private static Point[] toPoints(float[] quad) {
+        Point[] points = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            points[i] = new Point(Math.round(quad[i * 2]), Math.round(quad[i * 2 + 1]));
+        }
+        return points;
+    }
+
+    private static Point[] toPoints(int[] quad) {
+        Point[] points = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            points[i] = new Point(quad[i * 2], quad[i * 2 + 1]);
+        }
+        return points;
+    }
+
+    private static NativeImage processImage(NativeImage src, int op, int arg) {
+        checkImage(src);
+        return new NativeImage(nativeImageProcess(src.getNativePtr(), op, arg));
     }
 
-    private static native void nativeScan(Bitmap srcBitmap, Point[] outPoints, boolean canny);
+    private static native int nativeScanInto(Bitmap srcBitmap, int[] outQuad, int engineType, ScanOptions options,
+                                             long contextPtr);
+
+    private static native boolean nativeScanYuv(ByteBuffer yBuffer, int rowStride, int width, int height, int rotation,
+                                                int[] outQuad, ScanOptions options, long contextPtr);
 
     private static native void nativeCrop(Bitmap srcBitmap, Point[] points, Bitmap outBitmap);
 
+    private static native void nativeCropQuad(Bitmap srcBitmap, int[] quad, Bitmap outBitmap);
+
+    private static native void nativeCropQuadF(Bitmap srcBitmap, float[] quad, Bitmap outBitmap);
+
+    private static native int nativeScanIntoF(Bitmap srcBitmap, float[] outQuad, int engineType,
+                                              ScanOptions options, long contextPtr);
+
+    static native boolean nativeFillModelInput(Bitmap srcBitmap, int size, boolean floatInput, ByteBuffer buffer);
+
+    static native boolean nativeDecodeModelOutput(ByteBuffer output, int size, boolean quantized, float threshold,
+                                                  boolean soft, ByteBuffer outMask);
+
+    private static native int nativeScanMask(Bitmap srcBitmap, ByteBuffer mask, int width, int height,
+                                             int maskThreshold, float[] outQuadF, int[] outQuad,
+                                             ScanOptions options, long contextPtr);
+
+    static native long nativeScanContextCreate();
+
+    static native void nativeScanContextRelease(long nativePtr);
+
+    static native long nativeTrackerCreate();
+
+    static native void nativeTrackerRelease(long nativePtr);
+
+    static native void nativeTrackerReset(long nativePtr);
+
+    static native int nativeTrackerUpdateYuv(long nativePtr, ByteBuffer yBuffer, int rowStride, int width, int height,
+                                             int rotation, float[] outQuad, ScanOptions options);
+
+    static native int nativeTrackerUpdate(long nativePtr, Bitmap frame, float[] outQuad, ScanOptions options);
+
+    private static native void nativeRefine(Bitmap srcBitmap, float[] quad, float[] outQuad);
+
     private static native double nativeCalculateSSIM(Bitmap bitmap1, Bitmap bitmap2);
 
-    private static native Bitmap nativeConvertToGrayscale(Bitmap srcBitmap);
+    private static native void nativeProcessInto(Bitmap srcBitmap, Bitmap outBitmap, int op, int arg);
+
+    static native long nativeImageFromBitmap(Bitmap srcBitmap);
+
+    static native void nativeImageRelease(long nativePtr);
+
+    static native void nativeImageInfo(long nativePtr, int[] outInfo);
+
+    static native void nativeImageCopyToBitmap(long nativePtr, Bitmap outBitmap);
+
+    static native byte[] nativeImageToByteArray(long nativePtr);
+
+    static native boolean nativeImageCopyToBuffer(long nativePtr, ByteBuffer buffer);
+
+    private static native long nativeImageProcess(long nativePtr, int op, int arg);
+
+    private static native boolean nativeEncodeJpeg(Bitmap srcBitmap, FileDescriptor fd, int quality, int chromaQuality,
+                                                   int chromaSubsampling, boolean progressive, boolean optimize, boolean grayscale);
 
-    private static native Bitmap nativeDenoiseImage(Bitmap srcBitmap);
+    private static native boolean nativeImageEncodeJpeg(long nativePtr, FileDescriptor fd, int quality, int chromaQuality,
+                                                        int chromaSubsampling, boolean progressive, boolean optimize, boolean grayscale);
 
-    private static native Bitmap nativeEnhanceContrast(Bitmap srcBitmap);
+    private static native boolean nativeProcessFile(FileDescriptor input, FileDescriptor output, int scanMaxDim,
+                                                    ScanOptions scanOptions, int op, int arg, int quality, int chromaQuality,
+                                                    int chromaSubsampling, boolean progressive, boolean optimize,
+                                                    boolean grayscale, int[] outQuad, int[] outSize,
+                                                    long[] outTimings);
 
-    private static native Bitmap nativeBinarizeImage(Bitmap srcBitmap);
+    private static native boolean nativeImageScan(long nativePtr, int[] outQuad, ScanOptions options);
 
-    private static native Bitmap nativeAdvancedDocumentProcess(Bitmap srcBitmap);
+    private static native int nativeImageScanIntoF(long nativePtr, float[] outQuad, ScanOptions options,
+                                                   long contextPtr);
 
-    private static native Bitmap nativeSmartBinarize(Bitmap srcBitmap, int method);
+    static native int nativeSetNumThreads(int numThreads);
 
-    private static native Bitmap nativeAdvancedDenoise(Bitmap srcBitmap);
+    private static native long nativeDecode(String path, int reduceFactor, int maxDim, boolean grayscale);
 
     static {
         System.loadLibrary("smart_cropper");